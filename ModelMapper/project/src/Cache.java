@@ -13,13 +13,15 @@ import modelmapper.exception.*;
 import modelmapper.annotation.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.lang.reflect.*;
 
 
 /**
  * Class aimed to improve performance of field naming indirection.
- * Table and fields names are progressively saved into an hash map for better 
- * runtime performances
+ * Table and fields names are read from the {@link ModelMetadata} of the 
+ * models, built once per model interface, so the lookups take no lock 
+ * and are safe when the factory is used by many threads.
  * @author Alex Usbergo, Luca Querella
  * @version prototype
  */
@@ -28,43 +30,11 @@ public class Cache {
 	/** Maps */
 
 	private Map<Method, String> 
-		fieldNames = new HashMap<Method, String>();
-		
-	private Map<Class, String>	
-		tableNames = new HashMap<Class, String>();
+		fieldNames = new ConcurrentHashMap<Method, String>();
 	
 	/** It contains the correct implementation for each model interface */
-	private Map<Class, Class>
-		implementations = new HashMap<Class, Class>();
-	
-	/** A direct mapping beetween class fields and type for each class*/
-	private Map<Class, Map<String, Class>>
-		types = new HashMap<Class, Map<String, Class>>();
-	
-	/** If the model extends other interfaces (directly), here there are */
-	private Map<Class, List<Class>>
-		superclasses = new HashMap<Class, List<Class>>();
-		
-	private Map<Class, List<Class>>
-		allSuperclasses = new HashMap<Class, List<Class>>();
-	
-	private Map<Class, List<String>>
-		belongsToFields = new HashMap<Class, List<String>>();
-	
-	private Map<Class, List<Class>>
-		relatedClasses = new HashMap<Class, List<Class>>();
-	
-	/** Model Ids */
-	private Map<Class, String>	modelIds = new HashMap<Class, String>();
-	private Map<Class, Class>	modelIdTypes = new HashMap<Class, Class>();
-
-
-	/* Connections caching data */
-	private Map<Class, Map<String, Class>> connectionType = 
-		new HashMap<Class, Map<String, Class>>();
-		
-	private Map<Class, Map<String, Boolean>> arrayConnections = 
-		new HashMap<Class, Map<String, Boolean>>();
+	private ConcurrentMap<Class, Class>
+		implementations = new ConcurrentHashMap<Class, Class>();
 
 	private ModelFactory owner;
 	
@@ -78,9 +48,10 @@ public class Cache {
 	 */
 	protected String fieldName(Method m) {
 		
-		if (fieldNames.containsKey(m)) return fieldNames.get(m);
+		String name = fieldNames.get(m);
+		if (name != null) return name;
 		
-		String name = CommonStatic.fieldName(m);
+		name = CommonStatic.fieldName(m);
 		
 		fieldNames.put(m, name);
 		return name;
@@ -92,13 +63,7 @@ public class Cache {
 	 * @return The conventional table name for the given interface.
 	 */ 
 	protected String tableName(Class type) {
-		
-		if (tableNames.containsKey(type)) return tableNames.get(type);
-		
-		String tN = CommonStatic.tableName(type);
-
-		tableNames.put(type, tN);
-		return tN;
+		return ModelMetadata.of(type).tableName();
 	}
 	
 	/**
@@ -111,17 +76,11 @@ public class Cache {
 	 * @return The Id field name, or "Id" (the default id) if there's not.
 	 */
 	protected String getModelId(Class model) {
-		if (!modelIds.containsKey(model)) 
-			modelIds.put(model, CommonStatic.getModelId(model));
-			
-		return modelIds.get(model);		
+		return ModelMetadata.of(model).modelId();
 	}
 	
 	protected Class getModelIdType(Class model) {
-		if (!modelIdTypes.containsKey(model)) 
-			modelIdTypes.put(model, CommonStatic.getModelIdType(model));
-			
-		return modelIdTypes.get(model);		
+		return ModelMetadata.of(model).modelIdType();
 	}
 	
 	/**
@@ -137,11 +96,9 @@ public class Cache {
 	 * instantiation 
 	 */
 	protected ModelProxy createInstance(Class type) {
-		Class backClass;
-		if (implementations.containsKey(type)) 
-			backClass = implementations.get(type);
+		Class backClass = implementations.get(type);
 		
-		else { /* type never seen */
+		if (backClass == null) { /* type never seen */
 			
 			try { 
 				Package pkg =  type.getPackage();
@@ -154,8 +111,15 @@ public class Cache {
 			
 			Validator.validateModel(type, backClass);
 			
-			initFieldsTypes(type);
-			implementations.put(type, backClass);
+			/* a concrete class instead of the proxy dispatch */
+			if (owner.generatedModels()) {
+				Class generated = ModelClassGenerator.load(type, backClass);
+				if (generated != null) backClass = generated;
+			}
+			
+			/* the same for all the threads that saw the type first */
+			Class other = implementations.putIfAbsent(type, backClass);
+			if (other != null) backClass = other;
 		}
 		
 		ModelProxy impl = null; 
@@ -164,6 +128,8 @@ public class Cache {
 			throw new ModelRuntimeException(e.getMessage()); 
 		}
 		
+		impl.fields = new FieldMap(ModelLayout.of(type));
+		
 		return impl;
 	}
 	
@@ -174,11 +140,7 @@ public class Cache {
 	 * @param model The given model interface.
 	 */
 	protected boolean ownField(String fieldName, Class model) {
-		Map<String, Class> fields = types.get(model);
-		
-		if (fields.containsKey(fieldName)) return true;
-			
-		return false;
+		return getFieldsTypes(model).containsKey(fieldName);
 	}
 	
 	/**
@@ -191,10 +153,7 @@ public class Cache {
 	protected boolean ownFieldExtended(String fieldName, Class model) {
 		if (ownField(fieldName, model)) return true;
 		
-		List<Class> supers = allSuperclasses.get(model);
-		if (supers == null) return false;
-		
-		for (Class s : supers)
+		for (Class s : getAllSupers(model))
 			if (ownField(fieldName, s)) return true;
 			
 		return false;
@@ -205,37 +164,7 @@ public class Cache {
 	 * @return A mapping through names and types.
 	 */
 	protected Map<String, Class> getFieldsTypes(Class type) {
-		if (!types.containsKey(type)) { 
-			initFieldsTypes(type); 
-			
-		}
-		
-		return types.get(type);
-	}
-
-	private void initFieldsTypes(Class type) {
-		if (types.containsKey(type)) return;
-		
-		//TODO: Checks the connections - handle them differently
-		Map<String, Class> tMap = new HashMap<String, Class>();
-		Method[] getters = CommonStatic.getGetters(type);
-		
-		for (Method m : getters) 
-			if(!m.isAnnotationPresent(Connection.class))
-				tMap.put(fieldName(m), m.getReturnType());
-				
-		/* In inheritance case */
-		if (extendsModels(type)) {
-			List<Class> supers = getSupers(type);
-			
-			for (Class c : supers)
-				tMap.put(/*tableName(c)+*/getModelId(type), c);
-		}
-		
-		tMap.put("CreatedAt", java.sql.Timestamp.class);
-		tMap.put("UpdatedAt", java.sql.Timestamp.class);
-		
-		types.put(type, tMap);
+		return ModelLayout.of(type).fieldsTypes();
 	}
 	
 	/** 
@@ -258,15 +187,11 @@ public class Cache {
 	 * Returns a list of inherited {@link Model} interfaces (directly 
 	 * inherited) of the given model class.
 	 * @param type The given {@link Model} class type.
-	 * @return A list of interfaces that <code>type</code> extends directly.
+	 * @return A list of interfaces that <code>type</code> extends directly
+	 * (not modifiable).
 	 */
 	protected List<Class> getSupers(Class type) {
-		if (!superclasses.containsKey(type)) {
-			List<Class> sC = CommonStatic.getSupers(type);
-			superclasses.put(type, sC);
-		}
-			
-		return superclasses.get(type);
+		return ModelMetadata.of(type).supers();
 	}
 		
 	/**
@@ -289,49 +214,20 @@ public class Cache {
 	 * foreign key costraint inconsistency.
 	 * @param model The given {@link Model}.
 	 * @return A list of fields that represent the Models that owns 
-	 * <code>model</code>.
+	 * <code>model</code> (not modifiable).
 	 */
 	protected List<String> belongsTo(Class model) {
-		
-		if (belongsToFields.containsKey(model)) 
-			return belongsToFields.get(model);
-		
-		List<Class> sC = getSupers(model);		
-		List<String> ownerFields = new ArrayList<String>();
-		
-		Method[] getters = CommonStatic.getDeclaredGetters(model);
-		for (Method g : getters)
-		
-			/* has a belongs to annotation */
-			if (g.isAnnotationPresent(Connection.class) &&
-				g.getAnnotation(Connection.class).
-				type().equals(ConnectionType.BelongsTo)) {
-				
-				ownerFields.add(fieldName(g));
-			}
-				
-				
-		for (Class s : sC) ownerFields.addAll(belongsTo(s));
-		belongsToFields.put(model, ownerFields);
-		
-		return ownerFields;
-
+		return ModelMetadata.of(model).belongsTo();
 	}
 	
 	/**
 	 * Result of recursive calls at <code>getSupers</code>.
 	 * It returns a list of all the inherited interfaces of <code>type</code>.
 	 * @param type The given {@link Model} class type.
-	 * @return The complete <code>super</code> hierarchy.
+	 * @return The complete <code>super</code> hierarchy (not modifiable).
 	 */
 	protected List<Class> getAllSupers(Class type) {
-		
-		if (!allSuperclasses.containsKey(type)) {
-			List<Class> sC = CommonStatic.getAllSupers(type);
-			allSuperclasses.put(type, sC);
-		}
-			
-		return allSuperclasses.get(type);
+		return ModelMetadata.of(type).allSupers();
 	}
 	
 	/**
@@ -340,62 +236,18 @@ public class Cache {
 	 * @param type The given {@link Model} interface.
 	 * @return A list that contains all the models in a relationship with
 	 *  <code>type</code>
-	 * interface.
+	 * interface (not modifiable).
 	 */
 	 protected List<Class> getAllReleatedClasses(Class type) {
-		
-		if (relatedClasses.containsKey(type)) return relatedClasses.get(type);
-		
-		
-		List<Class> related = new ArrayList<Class>();
-		Method[] getters = CommonStatic.getDeclaredGetters(type);
-		
-		for (Method g : getters)
-			if (g.isAnnotationPresent(Connection.class)) {
-				
-				Class t = g.getReturnType();
-				t = t.isArray() ? t.getComponentType() : t;
-				
-				if (!related.contains(t)) related.add(t);
-			}
-			
-		relatedClasses.put(type, related);
-		
-		return related;
+		return ModelMetadata.of(type).related();
 	}
 	
 	protected Class getConnectionFieldType(Class model, String field) {
-		
-		if (!connectionType.containsKey(model)) {
-			connectionType.put(model, new HashMap<String, Class>());
-		}
-		
-		Map<String, Class> map = connectionType.get(model);
-		
-		if (map.containsKey(field.toLowerCase())) 
-			return map.get(field.toLowerCase());
-			
-		else map.put(field.toLowerCase(), 
-			 CommonStatic.getConnectionFieldType(model, field));
-			
-		return map.get(field.toLowerCase());
+		return ModelMetadata.of(model).connectionType(field);
 	}
 		
 	protected boolean isAnArrayConnection(Class model, String field) {
-		
-		if (!arrayConnections.containsKey(model)) {
-			arrayConnections.put(model, new HashMap<String, Boolean>());
-		}
-		
-		Map<String, Boolean> map = arrayConnections.get(model);
-		
-		if (map.containsKey(field.toLowerCase())) 
-			return map.get(field.toLowerCase());
-			
-		else map.put(field.toLowerCase(), 
-			 CommonStatic.isAnArrayConnection(model, field));
-			
-		return map.get(field.toLowerCase());
+		return ModelMetadata.of(model).isArrayConnection(field);
 	}
 
-}
\ No newline at end of file
+}
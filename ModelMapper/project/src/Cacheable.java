@@ -0,0 +1,24 @@
+// 
+//  Cacheable Annotation
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a model whose rows are kept in the second-level 
+ * {@code modelmapper.EntityCache} of the factory.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cacheable { 
+	
+	/** Time to live of the cached rows in seconds, 0 for the cache default */
+	long ttl() default 0;
+}
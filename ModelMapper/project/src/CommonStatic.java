@@ -60,7 +60,7 @@ public class CommonStatic {
 		classPckg = pckg == null ? null : pckg.getName();
 		
 		String tN; 
-		if (classPckg == null) tN = type.getName();
+		if (classPckg == null || classPckg.length() == 0) tN = type.getName();
 		
 		else tN = 
 			className.substring(classPckg.length() + 1, className.length()); 
@@ -246,6 +246,15 @@ public class CommonStatic {
 		return "Impl"; 
 	}
 	
+	/**
+	 * Returns the suffix of the classes generated by the 
+	 * {@link ModelClassGenerator}: the generated class for 
+	 * <code>Person</code> is <code>PersonGenerated</code>.
+	 */
+	protected static String getGeneratedSuffix() {
+		return "Generated";
+	}
+	
 	/**
 	 * Checks if the given method is a valid field getter for 
 	 * a {@link Model} interface.
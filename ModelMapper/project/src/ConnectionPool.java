@@ -0,0 +1,499 @@
+// 
+//  ConnectionPool
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import modelmapper.exception.*;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A bounded pool of JDBC connections used by the {@link RDBMSModelFactory}.
+ * Every operation of the factory borrows a connection from the pool and
+ * gives it back as soon as it's done, so concurrent requests don't
+ * serialize on a single socket.
+ * <p>The connections handed out are {@link java.lang.reflect.Proxy}
+ * instances (a new one for every borrow): calling <code>close()</code> on them returns the physical
+ * connection to the pool instead of closing it.</p>
+ * <p>The pool keeps at least <code>minSize</code> connections open and never
+ * opens more than <code>maxSize</code>. Idle connections above the minimum
+ * are evicted after <code>idleTimeout</code> ms, and the connections idle
+ * for longer than <code>validationInterval</code> ms are validated before
+ * being borrowed.</p>
+ * <p>Leak detection is off by default: with a <code>leakThreshold</code>,
+ * the connections held for longer are reported with the stack trace of
+ * the borrower, as warnings of the <code>modelmapper.ConnectionPool</code>
+ * {@link java.util.logging.Logger}. The trace is captured at every borrow,
+ * so it's meant for debugging.</p>
+ * <p>Each connection keeps an LRU cache of the statements prepared with
+ * <code>prepareStatement(String)</code> (see {@link StatementCache}), so
+ * the same SQL is parsed only once per connection.</p>
+ * <p>Any JDBC url can be used, so the pool can be tried against an
+ * embedded database.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public class ConnectionPool {
+
+	public static final int DEFAULT_MIN_SIZE = 1;
+	public static final int DEFAULT_MAX_SIZE = 10;
+	public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+	private String uri, user, password;
+	private int minSize, maxSize;
+
+	/* Timings in milliseconds (validation in seconds, as JDBC wants) */
+	private long idleTimeout   = 10 * 60 * 1000;
+	private long leakThreshold = 0;
+	private long validationInterval = 5 * 1000;
+	private long borrowTimeout = 30 * 1000;
+	private int validationTimeout = 2;
+
+	/* Prepared statements cached by each connection */
+	private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+	private AtomicLong statementHits = new AtomicLong();
+	private AtomicLong statementMisses = new AtomicLong();
+
+	private LinkedList<PooledConnection> idle =
+		new LinkedList<PooledConnection>();
+
+	private Set<PooledConnection> borrowed = new HashSet<PooledConnection>();
+
+	/* Physical connections open (idle, borrowed or being opened) */
+	private int size = 0;
+	private boolean closed = false;
+
+	private ScheduledExecutorService maintenance;
+
+	/* Connections reported as leaked */
+	private AtomicLong leaks = new AtomicLong();
+
+	private static final java.util.logging.Logger log =
+		java.util.logging.Logger.getLogger(ConnectionPool.class.getName());
+
+	public ConnectionPool(String uri, String user, String password) {
+		this(uri, user, password, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE);
+	}
+
+	public ConnectionPool(String uri, String user, String password,
+	int minSize, int maxSize) {
+
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+			throw new IllegalArgumentException("Invalid pool size: " +
+			minSize + ".." + maxSize);
+
+		this.uri = uri; this.user = user; this.password = password;
+		this.minSize = minSize; this.maxSize = maxSize;
+
+		/* first: a pool that can't connect doesn't start its thread */
+		try { fill();
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+
+		maintenance = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "modelmapper-pool");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+		maintenance.scheduleWithFixedDelay(new Runnable() {
+			public void run() { maintain(); }
+		}, 30, 30, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Borrows a connection from the pool. A connection idle for longer
+	 * than <code>validationInterval</code> is validated before being
+	 * returned; if the pool is exhausted the caller waits up
+	 * to <code>borrowTimeout</code> ms for a connection to be released.
+	 * @return A valid connection. Closing it returns it to the pool.
+	 * @throws ModelRuntimeException If no connection becomes available or
+	 * the database can't be reached.
+	 */
+	public java.sql.Connection borrow() {
+
+		long deadline = System.currentTimeMillis() + borrowTimeout;
+
+		while (true) {
+			PooledConnection pc = null;
+			boolean open = false;
+
+			synchronized (this) {
+				if (closed)
+					throw new ModelRuntimeException("Connection pool closed.");
+
+				while (idle.isEmpty() && size >= maxSize) {
+					long wait = deadline - System.currentTimeMillis();
+
+					if (wait <= 0)
+						throw new ModelRuntimeException("Connection pool " +
+						"exhausted (" + maxSize + " connections borrowed).");
+
+					try { wait(wait);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new ModelRuntimeException("Interrupted.");
+					}
+				}
+
+				if (!idle.isEmpty()) pc = idle.removeFirst();
+				else { size++; open = true; }
+			}
+
+			/* The physical connection is opened outside the lock */
+			if (open) {
+				try { pc = new PooledConnection(this, openPhysical());
+				} catch (SQLException e) {
+					discard(null);
+					throw new ModelRuntimeException(e.getMessage());
+				}
+
+			/* validation on borrow, of the connections idle for a while */
+			} else if (System.currentTimeMillis() - pc.lastUsed >=
+				validationInterval && !pc.isValid(validationTimeout)) {
+				discard(pc);
+				continue;
+			}
+
+			synchronized (this) { borrowed.add(pc); }
+
+			return pc.lease();
+		}
+	}
+
+	/**
+	 * Gives a connection back to the pool. It's the same of calling
+	 * <code>close()</code> on a connection obtained by {@link #borrow()}.
+	 */
+	public void release(java.sql.Connection connection) {
+		if (connection == null) return;
+
+		try { connection.close();
+		} catch (SQLException e) {
+			throw new ModelRuntimeException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Closes all the idle connections and refuses new borrows.
+	 * Borrowed connections are closed as soon as they're given back.
+	 */
+	public void close() {
+		List<PooledConnection> toClose;
+
+		synchronized (this) {
+			closed = true;
+			toClose = new ArrayList<PooledConnection>(idle);
+			idle.clear();
+			notifyAll();
+		}
+
+		if (maintenance != null) maintenance.shutdownNow();
+		for (PooledConnection pc : toClose) discard(pc);
+	}
+
+	/** Number of physical connections currently open */
+	public synchronized int size() { return size; }
+
+	/** Number of connections currently borrowed */
+	public synchronized int borrowedCount() { return borrowed.size(); }
+
+	public void setIdleTimeout(long ms) { this.idleTimeout = ms; }
+
+	/**
+	 * Enables the leak detection: the connections borrowed for longer than
+	 * <code>ms</code> are reported (<code>0</code> disables it).
+	 */
+	public void setLeakThreshold(long ms) { this.leakThreshold = ms; }
+
+	/**
+	 * Sets after how many ms of idleness a connection is validated before
+	 * being borrowed (<code>0</code> validates it at every borrow).
+	 */
+	public void setValidationInterval(long ms) {
+		this.validationInterval = ms;
+	}
+
+	public void setBorrowTimeout(long ms) { this.borrowTimeout = ms; }
+
+	public void setValidationTimeout(int seconds) {
+		this.validationTimeout = seconds;
+	}
+
+	/**
+	 * Sets the number of prepared statements cached by each connection
+	 * (<code>0</code> disables the cache). Affects only the connections
+	 * opened afterwards.
+	 */
+	public void setStatementCacheSize(int size) {
+		this.statementCacheSize = size;
+	}
+
+	/** @return How many times a cached prepared statement was reused */
+	public long getStatementCacheHits() { return statementHits.get(); }
+
+	/** @return How many times a statement had to be prepared */
+	public long getStatementCacheMisses() { return statementMisses.get(); }
+
+	/** @return How many borrowed connections have been reported as leaked */
+	public long getLeakCount() { return leaks.get(); }
+
+	/**
+	 * Marks a borrowed connection as pinned: <code>close()</code> calls are
+	 * ignored until it's unpinned. Used by {@link Transaction} to prevent
+	 * the custom code from giving back the transaction connection.
+	 */
+	protected void pin(java.sql.Connection connection, boolean pinned) {
+		handler(connection).pinned = pinned;
+	}
+
+	private PooledConnection handler(java.sql.Connection connection) {
+		if (!Proxy.isProxyClass(connection.getClass()) ||
+			!(Proxy.getInvocationHandler(connection) instanceof Lease))
+			throw new IllegalArgumentException("Not a pooled connection.");
+
+		return ((Lease) Proxy.getInvocationHandler(connection)).pc;
+	}
+
+	private java.sql.Connection openPhysical() throws SQLException {
+		return DriverManager.getConnection(uri, user, password);
+	}
+
+	/* Called by the connection proxy on close() */
+	private void giveBack(PooledConnection pc) {
+
+		boolean healthy = pc.reset();
+
+		synchronized (this) {
+			borrowed.remove(pc);
+
+			if (healthy && !closed) {
+				idle.addFirst(pc);
+				notifyAll();
+				return;
+			}
+		}
+
+		discard(pc);
+	}
+
+	/* Closes the physical connection and frees its place in the pool */
+	private void discard(PooledConnection pc) {
+		if (pc != null) pc.closePhysical();
+
+		synchronized (this) { size--; notifyAll(); }
+	}
+
+	/* Opens connections until the pool reaches its minimum size */
+	private void fill() {
+		while (true) {
+			synchronized (this) {
+				if (closed || size >= minSize) return;
+				size++;
+			}
+
+			try {
+				PooledConnection pc = new PooledConnection(this, openPhysical());
+
+				synchronized (this) { idle.addLast(pc); notifyAll(); }
+
+			} catch (SQLException e) {
+				discard(null);
+				throw new ModelRuntimeException(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Evicts the idle connections that timed out and reports the leaked
+	 * ones. It's run every 30 seconds by the pool itself.
+	 */
+	public void maintain() {
+		long now = System.currentTimeMillis();
+		List<PooledConnection> evicted = new ArrayList<PooledConnection>();
+		List<PooledConnection> leaked = new ArrayList<PooledConnection>();
+
+		synchronized (this) {
+			Iterator<PooledConnection> i = idle.descendingIterator();
+			int removable = size - minSize;
+
+			while (i.hasNext() && removable > 0) {
+				PooledConnection pc = i.next();
+				if (now - pc.lastUsed > idleTimeout) {
+					i.remove(); evicted.add(pc); removable--;
+				}
+			}
+
+			for (PooledConnection pc : borrowed)
+				if (leakThreshold > 0 && !pc.reported &&
+					now - pc.borrowedAt > leakThreshold) {
+					pc.reported = true;
+					leaked.add(pc);
+				}
+		}
+
+		for (PooledConnection pc : evicted) discard(pc);
+
+		for (PooledConnection pc : leaked) {
+			leaks.incrementAndGet();
+
+			log.log(java.util.logging.Level.WARNING, "Possible leak: " +
+				"connection borrowed " + (now - pc.borrowedAt) + "ms ago.",
+				pc.trace);
+		}
+
+		try { fill(); } catch (ModelRuntimeException e) { /* next round */ }
+	}
+
+	/**
+	 * A physical connection owned by the pool, with its usage informations.
+	 */
+	private static class PooledConnection {
+
+		private ConnectionPool pool;
+		private java.sql.Connection physical;
+
+		private StatementCache statements;
+
+		private long lastUsed, borrowedAt;
+		private Throwable trace;
+		private boolean reported, pinned;
+
+		/* The state of the connection when it was opened */
+		private int isolation;
+		private boolean readOnly;
+		private String catalog;
+
+		PooledConnection(ConnectionPool pool, java.sql.Connection physical)
+		throws SQLException {
+			this.pool = pool;
+			this.physical = physical;
+			this.statements = new StatementCache(physical,
+				pool.statementCacheSize, pool.statementHits,
+				pool.statementMisses);
+
+			try {
+				this.isolation = physical.getTransactionIsolation();
+				this.readOnly = physical.isReadOnly();
+				this.catalog = physical.getCatalog();
+
+			} catch (SQLException e) {
+				try { physical.close(); } catch (SQLException e1) { }
+				throw e;
+			}
+
+			this.lastUsed = System.currentTimeMillis();
+		}
+
+		/* A new proxy for every borrow, so stale references can't be reused */
+		java.sql.Connection lease() {
+			borrowedAt = System.currentTimeMillis();
+			trace = pool.leakThreshold > 0 ?
+				new Throwable("Connection borrowed here") : null;
+			reported = pinned = false;
+
+			return (java.sql.Connection) Proxy.newProxyInstance(
+				java.sql.Connection.class.getClassLoader(),
+				new Class[] {java.sql.Connection.class}, new Lease(this));
+		}
+
+		boolean isValid(int timeout) {
+			try { return physical.isValid(timeout);
+			} catch (SQLException e) { return false; }
+		}
+
+		/* Restores the connection state before putting it back in the pool */
+		boolean reset() {
+			try {
+				if (!physical.getAutoCommit()) {
+					physical.rollback();
+					physical.setAutoCommit(true);
+				}
+
+				/* changed by the borrower (e.g. a Transaction) */
+				if (physical.getTransactionIsolation() != isolation)
+					physical.setTransactionIsolation(isolation);
+
+				if (physical.isReadOnly() != readOnly)
+					physical.setReadOnly(readOnly);
+
+				if (catalog != null && !catalog.equals(physical.getCatalog()))
+					physical.setCatalog(catalog);
+
+				physical.clearWarnings();
+
+			} catch (SQLException e) { return false; }
+
+			lastUsed = System.currentTimeMillis();
+			return true;
+		}
+
+		void closePhysical() {
+			statements.clear();
+			try { physical.close(); } catch (SQLException e) { }
+		}
+	}
+
+	/**
+	 * The invocation handler behind a borrowed connection proxy.
+	 * Methods are forwarded to the physical connection, except
+	 * <code>close()</code> that returns the connection to the pool.
+	 */
+	private static class Lease implements InvocationHandler {
+
+		private PooledConnection pc;
+		private boolean open = true;
+
+		Lease(PooledConnection pc) { this.pc = pc; }
+
+		public Object invoke(Object p, Method method, Object[] args)
+		throws Throwable {
+
+			String name = method.getName();
+
+			if (name.equals("close") && args == null) {
+				synchronized (this) {
+					if (!open || pc.pinned) return null;
+					open = false;
+				}
+				pc.pool.giveBack(pc);
+				return null;
+			}
+
+			if (name.equals("isClosed") && args == null)
+				return !open || pc.physical.isClosed();
+
+			if (name.equals("equals") && args != null && args.length == 1)
+				return p == args[0];
+
+			if (name.equals("hashCode") && args == null)
+				return System.identityHashCode(p);
+
+			if (name.equals("toString") && args == null)
+				return "Pooled(" + pc.physical + ")";
+
+			if (!open)
+				throw new SQLException("Connection already returned to pool.");
+
+			if (name.equals("prepareStatement") && args.length == 1 &&
+				args[0] instanceof String)
+				return pc.statements.prepare((String) args[0]);
+
+			try { return method.invoke(pc.physical, args);
+			} catch (InvocationTargetException e) { throw e.getCause(); }
+		}
+	}
+}
@@ -0,0 +1,341 @@
+// 
+//  DeferredLob
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import java.io.*;
+import java.sql.*;
+
+/**
+ * The value of a <code>Blob</code> or <code>Clob</code> field that has not 
+ * been read with its row (the fields not marked as 
+ * {@link modelmapper.annotation.Eager}).
+ * <p>The content is read by id, from the database, every time it's asked:
+ * the streams returned are the ones of the JDBC driver, so large payloads 
+ * are never buffered by the mapper. A stream holds a connection until it's
+ * closed (in a {@link Transaction}, the connection of the transaction), 
+ * so it must always be closed.</p>
+ * <p>The values are read only: to change the content of the column, set a
+ * new <code>Blob</code> or <code>Clob</code> to the field. Saving an 
+ * instance doesn't write the deferred columns.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public abstract class DeferredLob {
+
+	protected final RDBMSModelFactory factory;
+	protected final Class type;
+	protected final String field;
+	protected final Object id;
+	
+	private DeferredLob(RDBMSModelFactory factory, Class type, String field, 
+	Object id) {
+		
+		this.factory = factory;
+		this.type = type;
+		this.field = field;
+		this.id = id;
+	}
+	
+	/**
+	 * Creates the deferred value of a field.
+	 * @param lob The field type, <code>Blob</code> or <code>Clob</code>.
+	 */
+	static Object of(RDBMSModelFactory factory, Class type, String field, 
+	Class lob, Object id) {
+		
+		return lob == Clob.class ? 
+			new ClobValue(factory, type, field, id) : 
+			new BlobValue(factory, type, field, id);
+	}
+	
+	/** The length of the content, in bytes or characters */
+	public long length() throws SQLException {
+		Cursor c = open(factory.getLobPlan(type, field, lengthFunction()));
+		
+		try { return c.rs.next() ? c.rs.getLong(1) : 0; } 
+		finally { c.close(); }
+	}
+	
+	/** Does nothing: the content is never held */
+	public void free() { }
+	
+	/* CHAR_LENGTH or OCTET_LENGTH */
+	abstract String lengthFunction();
+	
+	/**
+	 * Executes a query of the column. 
+	 * @return The open cursor, that gives back its connection when closed.
+	 */
+	Cursor open(QueryPlan plan) throws SQLException {
+		
+		Cursor c = new Cursor(factory.borrowConnection());
+		
+		try {
+			c.statement = c.connection.prepareStatement(plan.sql);
+			c.statement.setObject(1, id);
+			c.rs = c.statement.executeQuery();
+			
+		} catch (SQLException e) { c.close(); throw e; }
+		
+		return c;
+	}
+	
+	/* Positions the cursor on the row of the value */
+	Cursor row() throws SQLException {
+		Cursor c = open(factory.getLobPlan(type, field, null));
+		
+		if (!c.rs.next()) {
+			c.close();
+			throw new SQLException("Record not found: " + 
+				CommonStatic.tableName(type) + " " + id);
+		}
+		
+		return c;
+	}
+	
+	/* A result set and the resources to release with it */
+	class Cursor implements Closeable {
+		final java.sql.Connection connection;
+		PreparedStatement statement;
+		ResultSet rs;
+		
+		private boolean closed = false;
+		
+		Cursor(java.sql.Connection connection) { this.connection = connection; }
+		
+		public void close() {
+			if (closed) return;
+			
+			closed = true;
+			RDBMSModelFactory.close(rs, statement);
+			factory.releaseConnection(connection);
+		}
+	}
+	
+	/* The bytes in [pos, pos + length) of a stream (pos is 1 based) */
+	static byte[] read(InputStream in, long pos, int length) 
+	throws IOException {
+		
+		/* skip may skip less than asked */
+		for (long skip = pos - 1; skip > 0; ) {
+			long n = in.skip(skip);
+			
+			if (n <= 0) {
+				if (in.read() < 0) return new byte[0];
+				n = 1;
+			}
+			
+			skip -= n;
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		
+		int n;
+		while (length > 0 && 
+			(n = in.read(buffer, 0, Math.min(buffer.length, length))) > 0) {
+			
+			out.write(buffer, 0, n);
+			length -= n;
+		}
+		
+		return out.toByteArray();
+	}
+	
+	/* The characters in [pos, pos + length) of a reader (pos is 1 based) */
+	static String read(Reader in, long pos, int length) throws IOException {
+		
+		/* skip may skip less than asked */
+		for (long skip = pos - 1; skip > 0; ) {
+			long n = in.skip(skip);
+			
+			if (n <= 0) {
+				if (in.read() < 0) return "";
+				n = 1;
+			}
+			
+			skip -= n;
+		}
+		
+		StringBuilder out = new StringBuilder();
+		char[] buffer = new char[8192];
+		
+		int n;
+		while (length > 0 && 
+			(n = in.read(buffer, 0, Math.min(buffer.length, length))) > 0) {
+			
+			out.append(buffer, 0, n);
+			length -= n;
+		}
+		
+		return out.toString();
+	}
+	
+	static SQLException readOnly() {
+		return new SQLFeatureNotSupportedException(
+			"Deferred LOBs are read only.");
+	}
+	
+	/** A deferred <code>Blob</code> */
+	static class BlobValue extends DeferredLob implements Blob {
+		
+		BlobValue(RDBMSModelFactory factory, Class type, String field, 
+		Object id) {
+			super(factory, type, field, id);
+		}
+		
+		String lengthFunction() { return "OCTET_LENGTH"; }
+		
+		/**
+		 * Streams the content of the column.
+		 * @return The stream, <code>null</code> if the value is 
+		 * <code>NULL</code>.
+		 */
+		public InputStream getBinaryStream() throws SQLException {
+			final Cursor c = row();
+			InputStream in = null;
+			
+			try { in = c.rs.getBinaryStream(1); } 
+			finally { if (in == null) c.close(); }
+			
+			if (in == null) return null;
+			
+			return new FilterInputStream(in) {
+				public void close() throws IOException {
+					try { super.close(); } finally { c.close(); }
+				}
+			};
+		}
+		
+		public InputStream getBinaryStream(long pos, long length) 
+		throws SQLException {
+			return new ByteArrayInputStream(getBytes(pos, (int) length));
+		}
+		
+		public byte[] getBytes(long pos, int length) throws SQLException {
+			InputStream in = getBinaryStream();
+			if (in == null) return null;
+			
+			try { return read(in, pos, length); } 
+			catch (IOException e) { throw new SQLException(e); } 
+			finally { try { in.close(); } catch (IOException e) { } }
+		}
+		
+		public long position(byte[] pattern, long start) throws SQLException {
+			throw new SQLFeatureNotSupportedException();
+		}
+		
+		public long position(Blob pattern, long start) throws SQLException {
+			throw new SQLFeatureNotSupportedException();
+		}
+		
+		public int setBytes(long pos, byte[] bytes) throws SQLException {
+			throw readOnly();
+		}
+		
+		public int setBytes(long pos, byte[] bytes, int offset, int len) 
+		throws SQLException {
+			throw readOnly();
+		}
+		
+		public OutputStream setBinaryStream(long pos) throws SQLException {
+			throw readOnly();
+		}
+		
+		public void truncate(long len) throws SQLException { throw readOnly(); }
+	}
+	
+	/** A deferred <code>Clob</code> */
+	static class ClobValue extends DeferredLob implements Clob {
+		
+		ClobValue(RDBMSModelFactory factory, Class type, String field, 
+		Object id) {
+			super(factory, type, field, id);
+		}
+		
+		String lengthFunction() { return "CHAR_LENGTH"; }
+		
+		/**
+		 * Streams the content of the column.
+		 * @return The reader, <code>null</code> if the value is 
+		 * <code>NULL</code>.
+		 */
+		public Reader getCharacterStream() throws SQLException {
+			final Cursor c = row();
+			Reader in = null;
+			
+			try { in = c.rs.getCharacterStream(1); } 
+			finally { if (in == null) c.close(); }
+			
+			if (in == null) return null;
+			
+			return new FilterReader(in) {
+				public void close() throws IOException {
+					try { super.close(); } finally { c.close(); }
+				}
+			};
+		}
+		
+		public InputStream getAsciiStream() throws SQLException {
+			final Cursor c = row();
+			InputStream in = null;
+			
+			try { in = c.rs.getAsciiStream(1); } 
+			finally { if (in == null) c.close(); }
+			
+			if (in == null) return null;
+			
+			return new FilterInputStream(in) {
+				public void close() throws IOException {
+					try { super.close(); } finally { c.close(); }
+				}
+			};
+		}
+		
+		public Reader getCharacterStream(long pos, long length) 
+		throws SQLException {
+			return new StringReader(getSubString(pos, (int) length));
+		}
+		
+		public String getSubString(long pos, int length) throws SQLException {
+			Reader in = getCharacterStream();
+			if (in == null) return null;
+			
+			try { return read(in, pos, length); } 
+			catch (IOException e) { throw new SQLException(e); } 
+			finally { try { in.close(); } catch (IOException e) { } }
+		}
+		
+		public long position(String pattern, long start) throws SQLException {
+			throw new SQLFeatureNotSupportedException();
+		}
+		
+		public long position(Clob pattern, long start) throws SQLException {
+			throw new SQLFeatureNotSupportedException();
+		}
+		
+		public int setString(long pos, String str) throws SQLException {
+			throw readOnly();
+		}
+		
+		public int setString(long pos, String str, int offset, int len) 
+		throws SQLException {
+			throw readOnly();
+		}
+		
+		public OutputStream setAsciiStream(long pos) throws SQLException {
+			throw readOnly();
+		}
+		
+		public Writer setCharacterStream(long pos) throws SQLException {
+			throw readOnly();
+		}
+		
+		public void truncate(long len) throws SQLException { throw readOnly(); }
+	}
+}
@@ -0,0 +1,22 @@
+// 
+//  Eager Annotation
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a <code>java.sql.Blob</code> or <code>java.sql.Clob</code> field
+ * that is read with the other columns of its row. The other LOB fields 
+ * are not selected by the finds: their content is read by id when it's 
+ * streamed (see {@code modelmapper.DeferredLob}).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Eager { }
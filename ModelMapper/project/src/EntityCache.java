@@ -0,0 +1,361 @@
+// 
+//  EntityCache
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import modelmapper.annotation.*;
+
+import java.util.*;
+
+/**
+ * A second-level cache of packed rows, indexed by table and id, for the
+ * models marked as {@link Cacheable}.
+ * <p>The cache holds copies of the rows (with the rows of the super tables,
+ * for the models that extend other models), not the instances: every hit
+ * creates a new instance. The entries are evicted in LRU order when the
+ * cache is full, and expire after their time to live.</p>
+ * <p>The factory invalidates the entries of the rows it writes or deletes;
+ * evicting a super table row evicts the cached rows that include it too.
+ * A row read before an eviction isn't cached, so a find that runs
+ * concurrently with a save can't put the old row back. Rows changed by
+ * other processes are seen only after they expire.</p>
+ * <p>The mutable values (dates, byte arrays and LOBs) are copied in and
+ * out of the cache; the deferred LOBs are not cached.</p>
+ * <p>A cache can be shared by all the factories connected to the same
+ * database. It's thread safe.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public class EntityCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+	public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000;
+
+	private int maxEntries;
+	private long timeToLive;
+
+	private LinkedHashMap<Key, Row> rows;
+
+	/* super row -> the cached rows that include it */
+	private Map<Key, Set<Key>> dependents = new HashMap<Key, Set<Key>>();
+
+	/* table -> the keys of its rows, cached or with dependents */
+	private Map<String, Set<Key>> byTable = new HashMap<String, Set<Key>>();
+
+	private long hits, misses;
+
+	/* incremented by every eviction */
+	private long generation = 0;
+
+	public EntityCache() { this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE); }
+
+	/**
+	 * @param maxEntries The maximum number of cached rows.
+	 * @param timeToLive The default time to live of the rows in
+	 * milliseconds.
+	 */
+	public EntityCache(int maxEntries, long timeToLive) {
+		this.maxEntries = maxEntries;
+		this.timeToLive = timeToLive;
+
+		/* access ordered map: the eldest entry is the least recently used */
+		this.rows = new LinkedHashMap<Key, Row>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Key, Row> e) {
+				if (size() <= EntityCache.this.maxEntries) return false;
+
+				unlink(e.getKey(), e.getValue());
+				if (!dependents.containsKey(e.getKey())) unindex(e.getKey());
+
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Checks if the rows of the given model are cached.
+	 */
+	public static boolean isCacheable(Class type) {
+		return cacheable.get(type) != null;
+	}
+
+	private static final ClassValue<Cacheable> cacheable =
+		new ClassValue<Cacheable>() {
+			protected Cacheable computeValue(Class type) {
+				return (Cacheable) type.getAnnotation(Cacheable.class);
+			}
+		};
+
+	/**
+	 * Returns the cached row of <code>table</code> with the given id.
+	 * @return The row, <code>null</code> if it's not cached or expired.
+	 */
+	protected synchronized Row get(String table, Object id) {
+
+		if (id == null) return null;
+
+		Key k = new Key(table, id);
+		Row row = rows.get(k);
+
+		if (row != null && row.expires < System.currentTimeMillis()) {
+			remove(k);
+			row = null;
+		}
+
+		if (row == null) misses++; else hits++;
+		return row;
+	}
+
+	/**
+	 * The current generation of the cache: rows read before an eviction
+	 * are not cached.
+	 */
+	protected synchronized long generation() { return generation; }
+
+	/**
+	 * Caches a packed instance (and its super instances).
+	 * @param generation The generation of the cache when the row was
+	 * read: if an entry was evicted since, the row may be stale.
+	 */
+	protected synchronized void put(String table, Object id, ModelProxy m,
+	long generation) {
+
+		if (id == null || maxEntries == 0 || generation != this.generation)
+			return;
+
+		Cacheable c = cacheable.get(m.type);
+		long ttl = c != null && c.ttl() > 0 ? c.ttl() * 1000 : timeToLive;
+
+		Key k = new Key(table, id);
+		remove(k);
+
+		Row row = new Row(m, System.currentTimeMillis() + ttl);
+
+		List<Key> supers = new ArrayList<Key>();
+		row.superKeys(supers);
+		row.dependencies = supers;
+
+		for (Key s : supers) {
+			Set<Key> d = dependents.get(s);
+
+			if (d == null) {
+				d = new HashSet<Key>();
+				dependents.put(s, d);
+			}
+
+			d.add(k);
+			index(s);
+		}
+
+		rows.put(k, row);
+		index(k);
+	}
+
+	/**
+	 * Evicts the row of <code>table</code> with the given id, and all the
+	 * cached rows that include it as a super table row.
+	 */
+	public synchronized void evict(String table, Object id) {
+		generation++;
+		if (id != null) remove(new Key(table, id));
+	}
+
+	/** Evicts all the rows of a table */
+	public synchronized void evictTable(String table) {
+		generation++;
+
+		Set<Key> keys = byTable.get(table);
+		if (keys == null) return;
+
+		for (Key k : new ArrayList<Key>(keys)) remove(k);
+	}
+
+	/** Evicts all the rows */
+	public synchronized void clear() {
+		generation++;
+		rows.clear();
+		dependents.clear();
+		byTable.clear();
+	}
+
+	public synchronized int size() { return rows.size(); }
+
+	public synchronized long getHits() { return hits; }
+
+	public synchronized long getMisses() { return misses; }
+
+	public synchronized void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+
+		while (rows.size() > maxEntries) {
+			Key eldest = rows.keySet().iterator().next();
+			remove(eldest);
+		}
+	}
+
+	/** Sets the default time to live of the rows, in milliseconds */
+	public synchronized void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	private void remove(Key k) {
+		Row row = rows.remove(k);
+		if (row != null) unlink(k, row);
+
+		Set<Key> d = dependents.remove(k);
+		if (d != null) for (Key dk : new ArrayList<Key>(d)) remove(dk);
+
+		unindex(k);
+	}
+
+	/* Removes the row from the dependents of its super rows */
+	private void unlink(Key k, Row row) {
+		for (Key s : row.dependencies) {
+			Set<Key> d = dependents.get(s);
+			if (d == null) continue;
+
+			d.remove(k);
+
+			if (d.isEmpty()) {
+				dependents.remove(s);
+				if (!rows.containsKey(s)) unindex(s);
+			}
+		}
+	}
+
+	private void index(Key k) {
+		Set<Key> keys = byTable.get(k.table);
+
+		if (keys == null) {
+			keys = new HashSet<Key>();
+			byTable.put(k.table, keys);
+		}
+
+		keys.add(k);
+	}
+
+	private void unindex(Key k) {
+		Set<Key> keys = byTable.get(k.table);
+		if (keys == null) return;
+
+		keys.remove(k);
+		if (keys.isEmpty()) byTable.remove(k.table);
+	}
+
+	/**
+	 * A row of a model table: the values by slot of the {@link ModelLayout}
+	 * and the rows of the super tables.
+	 */
+	protected static class Row {
+
+		private static final Object ABSENT = new Object();
+
+		final Class type;
+		final Object id;
+		final String table;
+
+		private final Object[] values;
+		private final Row[] supers;
+
+		private long expires;
+		private List<Key> dependencies = Collections.emptyList();
+
+		/* a value couldn't be copied */
+		private boolean partial;
+
+		Row(ModelProxy m, long expires) {
+			this.type = m.type;
+			this.table = CommonStatic.tableName(m.type);
+			this.id = m.fields.get(CommonStatic.getModelId(m.type));
+			this.expires = expires;
+
+			FieldMap f = m.fields;
+			values = new Object[f.layout().size()];
+
+			for (int slot = 0; slot < values.length; slot++) {
+				Object v = f.has(slot) ? f.getValue(slot) : ABSENT;
+
+				/* only the keys of the owners are cached, not the models */
+				if (v instanceof Model || v instanceof DeferredLob) v = ABSENT;
+
+				try { values[slot] = copy(v);
+				} catch (java.sql.SQLException e) {
+					values[slot] = ABSENT;
+					partial = true;
+				}
+			}
+
+			List<Class> sC = CommonStatic.getSupers(m.type);
+			supers = new Row[sC.size()];
+
+			for (int i = 0; i < supers.length; i++) {
+				Model s = m.supers.get(sC.get(i));
+				supers[i] = s == null ? null :
+					new Row(s.modelImplementation(), expires);
+			}
+		}
+
+		private void superKeys(List<Key> keys) {
+			for (Row s : supers)
+				if (s != null && s.id != null) {
+					keys.add(new Key(s.table, s.id));
+					s.superKeys(keys);
+				}
+		}
+
+		/** Copies the values into the fields of an instance */
+		void copyTo(FieldMap f) {
+			for (int slot = 0; slot < values.length; slot++)
+				if (values[slot] != ABSENT) {
+					try { f.setValue(slot, copy(values[slot]));
+					} catch (java.sql.SQLException e) { /* in memory */ }
+				}
+		}
+
+		/** Some values are missing: the instance has to be loaded */
+		boolean isPartial() { return partial; }
+
+		/* A copy of a mutable value, the value itself otherwise */
+		private static Object copy(Object v) throws java.sql.SQLException {
+
+			if (v instanceof java.util.Date)
+				return ((java.util.Date) v).clone();
+
+			if (v instanceof byte[]) return ((byte[]) v).clone();
+
+			if (v instanceof java.sql.Blob)
+				return new javax.sql.rowset.serial.SerialBlob((java.sql.Blob) v);
+
+			if (v instanceof java.sql.Clob)
+				return new javax.sql.rowset.serial.SerialClob((java.sql.Clob) v);
+
+			return v;
+		}
+
+		/** The rows of the super tables, in <code>getSupers</code> order */
+		Row[] supers() { return supers; }
+	}
+
+	/* table, normalized id */
+	private static class Key {
+		final String table;
+		final Object id;
+
+		Key(String table, Object id) {
+			this.table = table;
+			this.id = Session.key(id);
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+
+			Key k = (Key) o;
+			return table.equals(k.table) && id.equals(k.id);
+		}
+
+		public int hashCode() { return 31 * table.hashCode() + id.hashCode(); }
+	}
+}
@@ -0,0 +1,283 @@
+// 
+//  FieldMap
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import modelmapper.exception.*;
+
+import java.util.*;
+
+/**
+ * The fields values of a model instance, stored by slot as described by
+ * the {@link ModelLayout} of the model: <code>int</code>, <code>long</code>
+ * and <code>double</code> fields in primitive arrays, the others in an
+ * <code>Object[]</code>.
+ * <p>It's also a <code>Map</code> indexed by field name, so it can be used
+ * wherever the fields map was. Keys that aren't part of the layout are kept
+ * in a (lazily created) <code>HashMap</code>.</p>
+ * <p>The typed accessors (<code>getInt</code>, <code>setInt</code>, ...)
+ * have to be used only on slots of the same kind.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public final class FieldMap extends AbstractMap<String, Object> {
+
+	private final ModelLayout layout;
+
+	private final Object[] objects;
+	private final int[] ints;
+	private final long[] longs;
+	private final double[] doubles;
+
+	/* bitsets: slot assigned, primitive slot assigned to null */
+	private final long[] present, nulls;
+
+	/* values not in the layout */
+	private Map<String, Object> extra;
+
+	public FieldMap(ModelLayout layout) {
+		this.layout = layout;
+
+		objects = new Object[layout.count(ModelLayout.OBJECT)];
+		ints = new int[layout.count(ModelLayout.INT)];
+		longs = new long[layout.count(ModelLayout.LONG)];
+		doubles = new double[layout.count(ModelLayout.DOUBLE)];
+
+		int words = (layout.size() + 63) >>> 6;
+		present = new long[words];
+		nulls = new long[words];
+	}
+
+	public ModelLayout layout() { return layout; }
+
+	/** Checks if the slot has a value (also <code>null</code>) */
+	public boolean has(int slot) {
+		return (present[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	private boolean isNull(int slot) {
+		return (nulls[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	private void mark(int slot, boolean isNull) {
+		present[slot >>> 6] |= 1L << slot;
+
+		if (isNull) nulls[slot >>> 6] |= 1L << slot;
+		else nulls[slot >>> 6] &= ~(1L << slot);
+	}
+
+	/** Removes the value of the slot */
+	public void clear(int slot) {
+		present[slot >>> 6] &= ~(1L << slot);
+		nulls[slot >>> 6] &= ~(1L << slot);
+
+		if (layout.kind(slot) == ModelLayout.OBJECT)
+			objects[layout.offset(slot)] = null;
+	}
+
+	/**
+	 * The value of the slot, boxed if it's a primitive.
+	 * @return The value, <code>null</code> if it's not assigned.
+	 */
+	public Object getValue(int slot) {
+		if (!has(slot) || isNull(slot)) return null;
+
+		int o = layout.offset(slot);
+
+		switch (layout.kind(slot)) {
+			case ModelLayout.INT: return ints[o];
+			case ModelLayout.LONG: return longs[o];
+			case ModelLayout.DOUBLE: return doubles[o];
+			default: return objects[o];
+		}
+	}
+
+	/**
+	 * Assigns the slot. Primitive slots accept <code>null</code> and any
+	 * {@link Number}.
+	 * @throws ModelRuntimeException If the value can't be stored in a
+	 * primitive slot.
+	 */
+	public void setValue(int slot, Object value) {
+
+		int kind = layout.kind(slot);
+		int o = layout.offset(slot);
+
+		if (kind == ModelLayout.OBJECT) {
+			objects[o] = value;
+			mark(slot, false);
+			return;
+		}
+
+		if (value == null) { mark(slot, true); return; }
+
+		/* e.g. TINYINT(1) columns */
+		if (value instanceof Boolean)
+			value = ((Boolean) value).booleanValue() ? 1 : 0;
+
+		if (!(value instanceof Number))
+			throw new ModelRuntimeException("Invalid value for the field " +
+			layout.name(slot) + ": " + value);
+
+		Number n = (Number) value;
+
+		switch (kind) {
+			case ModelLayout.INT: ints[o] = n.intValue(); break;
+			case ModelLayout.LONG: longs[o] = n.longValue(); break;
+			default: doubles[o] = n.doubleValue();
+		}
+
+		mark(slot, false);
+	}
+
+	/** The value of an <code>int</code> slot, <code>0</code> if not set or 
+	 * <code>null</code> */
+	public int getInt(int slot) {
+		return has(slot) && !isNull(slot) ? ints[layout.offset(slot)] : 0;
+	}
+
+	public void setInt(int slot, int value) {
+		ints[layout.offset(slot)] = value;
+		mark(slot, false);
+	}
+
+	/** The value of a <code>long</code> slot, <code>0</code> if not set or 
+	 * <code>null</code> */
+	public long getLong(int slot) {
+		return has(slot) && !isNull(slot) ? longs[layout.offset(slot)] : 0;
+	}
+
+	public void setLong(int slot, long value) {
+		longs[layout.offset(slot)] = value;
+		mark(slot, false);
+	}
+
+	/** The value of a <code>double</code> slot, <code>0</code> if not set 
+	 * or <code>null</code> */
+	public double getDouble(int slot) {
+		return has(slot) && !isNull(slot) ? doubles[layout.offset(slot)] : 0;
+	}
+
+	public void setDouble(int slot, double value) {
+		doubles[layout.offset(slot)] = value;
+		mark(slot, false);
+	}
+
+	/* The Map view */
+
+	private int slot(Object key) {
+		return key instanceof String ? layout.slot((String) key) : -1;
+	}
+
+	public Object get(Object key) {
+		int slot = slot(key);
+		if (slot >= 0) return getValue(slot);
+
+		return extra == null ? null : extra.get(key);
+	}
+
+	public boolean containsKey(Object key) {
+		int slot = slot(key);
+		if (slot >= 0) return has(slot);
+
+		return extra != null && extra.containsKey(key);
+	}
+
+	public Object put(String key, Object value) {
+		int slot = slot(key);
+
+		if (slot >= 0) {
+			Object prev = getValue(slot);
+			setValue(slot, value);
+			return prev;
+		}
+
+		if (extra == null) extra = new HashMap<String, Object>();
+		return extra.put(key, value);
+	}
+
+	public Object remove(Object key) {
+		int slot = slot(key);
+
+		if (slot >= 0) {
+			Object prev = getValue(slot);
+			clear(slot);
+			return prev;
+		}
+
+		return extra == null ? null : extra.remove(key);
+	}
+
+	public int size() {
+		int size = extra == null ? 0 : extra.size();
+		for (long w : present) size += Long.bitCount(w);
+
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(present, 0);
+		Arrays.fill(nulls, 0);
+		Arrays.fill(objects, null);
+		extra = null;
+	}
+
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			public int size() { return FieldMap.this.size(); }
+
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new Entries();
+			}
+		};
+	}
+
+	/* Iterates over the assigned slots, then over the extra values */
+	private class Entries implements Iterator<Map.Entry<String, Object>> {
+
+		private int next = -1, last = -1;
+		private Iterator<Map.Entry<String, Object>> others;
+
+		Entries() { advance(); }
+
+		private void advance() {
+			do next++; while (next < layout.size() && !has(next));
+		}
+
+		public boolean hasNext() {
+			if (next < layout.size()) return true;
+
+			if (others == null && extra != null)
+				others = extra.entrySet().iterator();
+
+			return others != null && others.hasNext();
+		}
+
+		public Map.Entry<String, Object> next() {
+			if (!hasNext()) throw new NoSuchElementException();
+
+			if (next >= layout.size()) { last = -1; return others.next(); }
+
+			final int slot = last = next;
+			advance();
+
+			return new SimpleEntry<String, Object>(layout.name(slot),
+			getValue(slot)) {
+				public Object setValue(Object value) {
+					FieldMap.this.setValue(slot, value);
+					return super.setValue(value);
+				}
+			};
+		}
+
+		public void remove() {
+			if (last >= 0) { clear(last); last = -1; }
+			else if (others != null) others.remove();
+			else throw new IllegalStateException();
+		}
+	}
+}
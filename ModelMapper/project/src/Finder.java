@@ -8,9 +8,14 @@
 
 package modelmapper;
 
+import modelmapper.annotation.*;
 import modelmapper.exception.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.*;
 
 public class Finder<T extends Model> {
 	
@@ -29,6 +34,12 @@ public class Finder<T extends Model> {
 	private int limit = 0;
 	private boolean desc = true;
 	
+	/* time to live of the cached results (0: not cached) */
+	private long ttl = 0;
+	
+	/* the selected fields (null: all) */
+	private String[] fields = null;
+	
 	public Finder(Class model, ModelFactory factory) {
 		if (model.isAssignableFrom(Model.class))
 			throw new IllegalArgumentException("Not a Model: " + model);
@@ -37,8 +48,54 @@ public class Finder<T extends Model> {
 	}
 	
 
-	/* TODO: Not Implemented yet */
-	public long count() { return 0; }
+	/**
+	 * Counts the results with a <code>COUNT(*)</code> query, without 
+	 * retrieving them.
+	 */
+	public long count() { 
+		Object n = aggregate("COUNT", null);
+		return n == null ? 0 : ((Number) n).longValue();
+	}
+	
+	/**
+	 * Checks if there's any result, with a query limited to one row.
+	 */
+	public boolean exists() { 
+		return factory.exists(model, criteria, toArray(params));
+	}
+	
+	/**
+	 * The sum of a field over the results, computed by the database.
+	 * @return The sum, <code>null</code> if there are no results.
+	 */
+	public Number sum(String field) { 
+		return (Number) aggregate("SUM", field); 
+	}
+	
+	/**
+	 * The average of a field over the results, computed by the database.
+	 * @return The average, <code>null</code> if there are no results.
+	 */
+	public Number avg(String field) { 
+		return (Number) aggregate("AVG", field); 
+	}
+	
+	/**
+	 * The minimum value of a field over the results.
+	 * @return The value, <code>null</code> if there are no results.
+	 */
+	public Object min(String field) { return aggregate("MIN", field); }
+	
+	/**
+	 * The maximum value of a field over the results.
+	 * @return The value, <code>null</code> if there are no results.
+	 */
+	public Object max(String field) { return aggregate("MAX", field); }
+	
+	private Object aggregate(String function, String field) {
+		return factory.aggregate(model, function, field, criteria, 
+			toArray(params));
+	}
 	
 	
 	private T[] get(int limit, boolean desc, boolean invert) {
@@ -46,63 +103,29 @@ public class Finder<T extends Model> {
 		String id = factory.getCache().getModelId(model);
 		String tN = factory.getCache().tableName(model);
 		
-		if (orderBy == null) orderBy = tN + "." + id;
+		String order = orderBy == null ? tN + "." + id : orderBy;
 		
-		Model[] all = 
-			factory.advancedFind(model, criteria, orderBy, desc, limit, 
-			null, toArray(params));
-					
-		if (connections.size() == 0) return (T[]) all;
+		return get(criteria, params, order, limit, desc, invert);
+	}
+	
+	private T[] get(String criteria, List<Object> params, String order, 
+	int limit, boolean desc, boolean invert) {
 		
-		/* NOT SUPPORTED. (Workaround for maximise compatibility)
-		 * This version of MySQL doesn't yet support 
-		 * 'LIMIT & IN/ALL/ANY/SOME subquery'
-		 */
-		if (limit > 0) {
-			criteria = " ( ";
-			params =  new ArrayList<Object>();
-			
-			boolean first = true;
-			for (Model m : all) {
-				criteria += first ? " " : " or ";
-				criteria += tN + "." + id + " = ? ";
-				params.add(m.fields().get(id));
-				first = false;
-				orderBy = tN + "." + id;
-			}
-			
-			criteria += " ) ";
-		}
+		Model[] all = fields != null ?
+			factory.advancedSelect(model, fields, criteria, order, desc, 
+			limit, toArray(params)) :
+			ttl > 0 ?
+			factory.cachedFind(model, criteria, order, desc, limit, 
+			toArray(params), ttl) :
+			factory.advancedFind(model, criteria, order, desc, limit, 
+			null, toArray(params));
 		
-		/* A query for every inclusion.
-		/* In the case the user call a method include(...) on a Finder
-		 * the relationships have to be fetched in a single query for avoid
-		 * the N + 1 query problem in a loop.
-		 * This section of code handle this problem by adding the right
-		 * JOIN statement, and later the packing will be different.
+		/* A query for every inclusion, by the ids of the results.
+		 * In the case the user call a method include(...) on a Finder
+		 * the relationships have to be fetched for all the results together 
+		 * for avoid the N + 1 query problem in a loop.
 		 */
-		for (String c : connections) {
-			
-			Model[] results = 
-					factory.advancedFind(model, criteria, orderBy, desc,
-					0, new String[]{c}, toArray(params));
-							
-				
-			int i = 0, j = 0;	
-			for (; i < all.length; i++) {
-				if (j < results.length && all[i].equalsId(results[j])) {
-					
-					/* A little bit too much into ModelProxy implementation
-					 * but it's useful in order to achieve good performancies
-					 */
-					ModelProxy objI = all[i].modelImplementation();
-					ModelProxy objJ = results[j++].modelImplementation();
-					
-					objI.fetched.put(c, objJ.fetched.get(c));
-					
-				} else all[i].modelImplementation().addModels(c, null, true);
-			}
-		}
+		fetchIncluded(all);
 		
 		if (invert) {
 			List<T> back = new ArrayList<T>();
@@ -141,6 +164,228 @@ public class Finder<T extends Model> {
 		return get(limit, !desc, true);
 	}
 	
+	/**
+	 * Runs <code>all()</code> on the executor of the factory 
+	 * (<code>ModelFactory.setExecutor</code>), so several finds can run 
+	 * concurrently. Every operation borrows its own connection from the 
+	 * pool: it doesn't see the rows written and not committed by a 
+	 * {@link Transaction} of the calling thread, and its results are not 
+	 * part of the {@link Session} of the calling thread.
+	 * Changing this finder after the call doesn't affect the operation.
+	 * @return A future completed with the results, or exceptionally with 
+	 * the exception thrown by the find.
+	 */
+	public CompletableFuture<T[]> allAsync() {
+		final Finder<T> f = copy();
+		
+		return async(new Supplier<T[]>() {
+			public T[] get() { return f.all(); }
+		});
+	}
+	
+	/** 
+	 * Runs <code>first()</code> on the executor of the factory. 
+	 * @see #allAsync 
+	 */
+	public CompletableFuture<T> firstAsync() {
+		final Finder<T> f = copy();
+		
+		return async(new Supplier<T>() {
+			public T get() { return f.first(); }
+		});
+	}
+	
+	/** 
+	 * Runs <code>count()</code> on the executor of the factory. 
+	 * @see #allAsync 
+	 */
+	public CompletableFuture<Long> countAsync() {
+		final Finder<T> f = copy();
+		
+		return async(new Supplier<Long>() {
+			public Long get() { return f.count(); }
+		});
+	}
+	
+	private <R> CompletableFuture<R> async(Supplier<R> operation) {
+		return CompletableFuture.supplyAsync(operation, factory.getExecutor());
+	}
+	
+	/* A finder with the same state, not changed by this one anymore */
+	private Finder<T> copy() {
+		return new Finder<T>(model, factory, criteria, orderBy, 
+							 desc, params, connections, ttl, fields);
+	}
+	
+	/**
+	 * Returns the <code>n</code> results that follow the given key, in 
+	 * the order of the finder (keyset pagination). The query seeks the 
+	 * key with a <code>WHERE (orderField, id) &gt; (?, ?)</code> 
+	 * condition instead of skipping the previous rows, so every page costs
+	 * the same. The id breaks the ties of the order field, whose values
+	 * must not be <code>null</code>.
+	 * @param key The key of the last result of the previous page (see 
+	 * <code>keyOf</code>), <code>null</code> for the first page.
+	 * @param n The page size.
+	 */
+	public T[] pageAfter(Object[] key, int n) { return page(key, n, false); }
+	
+	/**
+	 * Returns the <code>n</code> results that follow the given one.
+	 * @see #pageAfter(Object[], int)
+	 */
+	public T[] pageAfter(T last, int n) { 
+		return pageAfter(last == null ? null : keyOf(last), n);
+	}
+	
+	/**
+	 * Returns the <code>n</code> results that precede the given key, in
+	 * the order of the finder.
+	 * @param key The key of the first result of the next page, 
+	 * <code>null</code> for the last page.
+	 * @param n The page size.
+	 * @see #pageAfter(Object[], int)
+	 */
+	public T[] pageBefore(Object[] key, int n) { return page(key, n, true); }
+	
+	/**
+	 * Returns the <code>n</code> results that precede the given one.
+	 * @see #pageBefore(Object[], int)
+	 */
+	public T[] pageBefore(T first, int n) { 
+		return pageBefore(first == null ? null : keyOf(first), n);
+	}
+	
+	/**
+	 * Returns an iterator over the pages of <code>n</code> results, 
+	 * read with <code>pageAfter</code>.
+	 */
+	public PageIterator<T> pages(int n) { return new PageIterator<T>(this, n); }
+	
+	/**
+	 * Returns the pagination key of a result: the value of the order 
+	 * field (if it's not the id) and the id. It can be passed to a client
+	 * as the cursor of a page.
+	 */
+	public Object[] keyOf(T m) {
+		List<String> columns = keyColumns();
+		Object[] key = new Object[columns.size()];
+		
+		Map<String, Object> fields = m.fields();
+		
+		for (int i = 0; i < key.length; i++) {
+			String c = columns.get(i);
+			key[i] = value(fields, c.substring(c.lastIndexOf('.') + 1).trim());
+		}
+		
+		return key;
+	}
+	
+	private T[] page(Object[] key, int n, boolean before) {
+		
+		List<String> columns = keyColumns();
+		boolean d = before ? !desc : desc;
+		
+		String c = criteria;
+		List<Object> p = new ArrayList<Object>(params);
+		
+		if (key != null) {
+			if (key.length != columns.size())
+				throw new IllegalArgumentException("Invalid key length: " + 
+				key.length);
+			
+			c += c.equals("") ? " " : " and ";
+			c += "(" + factory.seekCriteria(columns, !d) + ")";
+			
+			for (Object o : key) p.add(o);
+		}
+		
+		/* the desc flag is applied to the last column only */
+		String order = columns.size() == 1 ? columns.get(0) : 
+			columns.get(0) + (d ? " DESC, " : " ASC, ") + columns.get(1);
+		
+		return get(c, p, order, n, d, before);
+	}
+	
+	/* The order field (unless it's the id) and the id */
+	private List<String> keyColumns() {
+		String id = factory.getCache().getModelId(model);
+		String idColumn = factory.getCache().tableName(model) + "." + id;
+		
+		List<String> columns = new ArrayList<String>();
+		
+		if (orderBy != null && !orderBy.equalsIgnoreCase(id) && 
+			!orderBy.equalsIgnoreCase(idColumn)) columns.add(orderBy);
+		
+		columns.add(idColumn);
+		return columns;
+	}
+	
+	private static Object value(Map<String, Object> fields, String field) {
+		if (fields.containsKey(field)) return fields.get(field);
+		
+		for (Map.Entry<String, Object> e : fields.entrySet())
+			if (e.getKey().equalsIgnoreCase(field)) return e.getValue();
+		
+		throw new ModelRuntimeException("Invalid key field: " + field);
+	}
+	
+	/**
+	 * Returns a forward-only iterator over all the results. The rows are
+	 * read from a cursor and packed one at a time, so the results are 
+	 * never materialized all together. Included connections are loaded 
+	 * lazily.
+	 * <p>The iterator holds a pooled connection until it's closed, and the 
+	 * lazy loads done while iterating borrow another one. Inside a 
+	 * {@link Transaction} they share the connection of the transaction, so 
+	 * with MySQL the rows are not streamed: they are read 
+	 * <code>cursorFetchSize</code> at a time with 
+	 * <code>useCursorFetch=true</code> in the url, all at once otherwise 
+	 * (see {@link RDBMSModelFactory#setCursorFetchSize}).</p>
+	 * @return A {@link ModelIterator} that must be closed if the iteration
+	 * stops before the end.
+	 */
+	public ModelIterator<T> iterator() {
+		String id = factory.getCache().getModelId(model);
+		String tN = factory.getCache().tableName(model);
+		
+		String order = orderBy == null ? tN + "." + id : orderBy;
+		
+		return factory.advancedIterator(model, criteria, order, desc, 0, 
+									   toArray(params));
+	}
+	
+	/**
+	 * Performs the given action on every result, reading them from a 
+	 * cursor. The cursor is closed when the iteration ends, even if the 
+	 * action throws an exception.
+	 * @param action The action to perform.
+	 */
+	public void forEach(Consumer<? super T> action) {
+		ModelIterator<T> i = iterator();
+		
+		try { while (i.hasNext()) action.accept(i.next()); 
+		} finally { i.close(); }
+	}
+	
+	/**
+	 * Returns a sequential {@link Stream} of the results, backed by a 
+	 * cursor. The stream must be closed (e.g. with try-with-resources) to 
+	 * release the cursor if it's not fully consumed. The connections are 
+	 * used as by {@link #iterator()}.
+	 * @return A stream of the results.
+	 */
+	public Stream<T> stream() {
+		final ModelIterator<T> i = iterator();
+		
+		Spliterator<T> split = Spliterators.spliteratorUnknownSize(i, 
+			Spliterator.ORDERED | Spliterator.NONNULL);
+		
+		return StreamSupport.stream(split, false).onClose(new Runnable() {
+			public void run() { i.close(); }
+		});
+	}
+	
 	public Finder<T> where(String field, Object... args) { 
 		return buildCriteria(field, EQ_OP, args);
 	}
@@ -157,14 +402,80 @@ public class Finder<T extends Model> {
 		return buildCriteria(field, NOT_OP, args);
 	}
 	
-	/* TODO: Not Implemented yet */
-	public Finder<T> include(String connectionField) { 
+	/* Fetches the included connections of all the results 
+	 * (see ModelFactory.fetchAll) */
+	private void fetchIncluded(Model[] all) {
+		if (all.length == 0 || connections.isEmpty()) return;
+		
+		int n = connections.size();
+		
+		Connection[] c = new Connection[n];
+		Class[] types = new Class[n];
+		String[] fields = new String[n];
+		
+		for (int i = 0; i < n; i++) {
+			String field = connections.get(i);
 			
-		//for (String c : connectionField) connections.add(c);
-		connections.add(connectionField);
+			c[i] = CommonStatic.searchConnection(model, field);
+			types[i] = CommonStatic.getConnectionFieldType(model, field);
+			fields[i] = field.toLowerCase();
+		}
+		
+		List<ModelProxy> results = new ArrayList<ModelProxy>();
+		
+		for (Model m : all) {
+			ModelProxy p = m.modelImplementation();
+			
+			/* an instance of the session may have them already */
+			for (String f : fields) p.fetched.remove(f);
+			results.add(p);
+		}
 		
+		factory.fetchAll(types, fields, results, c);
+	}
+	
+	/**
+	 * Returns a finder that fetches the given connection of all the 
+	 * results, with a query for every inclusion.
+	 * @param connectionField The connection field.
+	 */
+	public Finder<T> include(String connectionField) { 
+		
+		Finder<T> back = new Finder<T>(model, factory, criteria, orderBy, 
+									   desc, params, connections, ttl, fields);
+		
+		if (!back.connections.contains(connectionField)) 
+			back.connections.add(connectionField);
+		
+		return back;
+	}
+	
+	/**
+	 * Returns a finder whose results are cached by the factory for the 
+	 * given time (included connections are always fetched). The cached 
+	 * results are invalidated as soon as the factory saves or deletes a 
+	 * model of one of the tables read.
+	 * @param ttl The time to live of the results.
+	 */
+	public Finder<T> cached(java.time.Duration ttl) {
+		return new Finder<T>(model, factory, criteria, orderBy, 
+							 desc, params, connections, ttl.toMillis(), 
+							 fields);
+	}
+	
+	/**
+	 * Returns a finder that reads only the given fields (and the ids) of 
+	 * the results, joining only the super tables that own them. The 
+	 * other fields are loaded when they're first read, together for the 
+	 * results of the same find (an <code>IN</code> query of up to 
+	 * <code>fetchBatchSize</code> ids). The results of a projection are 
+	 * not cached.
+	 * @param fields The fields to read.
+	 */
+	public Finder<T> select(String... fields) {
 		return new Finder<T>(model, factory, criteria, orderBy, 
-							 desc, params, connections);
+							 desc, params, connections, ttl, 
+							 fields.length == 0 ? null : fields.clone());
 	}
 	
 	public Finder<T> orderByDesc(String field) { 
@@ -202,7 +513,7 @@ public class Finder<T extends Model> {
 				
 		/* Finders are handled ad immutable objects */
 		return new Finder<T>(model, factory, criteria, orderBy, 
-							 desc, params, connections);
+							 desc, params, connections, ttl, fields);
 	}
 	
 	private Finder<T> orderBy(String field, boolean desc) {
@@ -210,7 +521,7 @@ public class Finder<T extends Model> {
 		this.desc = desc;
 		
 		return new Finder<T>(model, factory, criteria, orderBy, 
-							 desc, params, connections);
+							 desc, params, connections, ttl, fields);
 	}
 	
 	private static Object[] toArray(List<Object> objects) {
@@ -228,7 +539,8 @@ public class Finder<T extends Model> {
 	}
 	
 	private Finder(Class model, ModelFactory factory, String criteria, 
-	String orderBy, boolean desc, List<Object> params, List<String> conn) {
+	String orderBy, boolean desc, List<Object> params, List<String> conn,
+	long ttl, String[] fields) {
 		/* fields init */
 		this.model = model; 
 		this.factory = factory; 
@@ -241,5 +553,7 @@ public class Finder<T extends Model> {
 		/* adding all the elements */
 		this.params.addAll(params);
 		this.connections.addAll(conn);
+		this.ttl = ttl;
+		this.fields = fields;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,480 @@
+// 
+//  ModelClassGenerator
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import modelmapper.annotation.*;
+import modelmapper.exception.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.lang.reflect.*;
+import javax.tools.*;
+
+/**
+ * Generates a concrete class for a {@link Model} interface, used in place of
+ * the {@link java.lang.reflect.Proxy} dispatch when the factory has
+ * <code>setGeneratedModels(true)</code>.
+ * <p>The generated class extends the model implementation (the
+ * <code>Impl</code> class, or {@link ModelProxy}) and implements the
+ * interface: the getters and the setters read and write the slots of the
+ * {@link FieldMap} directly, the inherited ones are delegated to the superclass instance and
+ * the {@link Connection} getters call the lazy fetch logic of
+ * {@link ModelProxy}. Business methods are inherited from the
+ * implementation.</p>
+ * <p>The classes are compiled at runtime with the system Java compiler;
+ * they can also be generated at build time with
+ * <pre>java modelmapper.ModelClassGenerator outputDir Person Student ...</pre>
+ * and compiled with the models, so that no compiler is needed at runtime.
+ * If a class can't be generated the proxy is used, and the compiler
+ * diagnostics are logged (level <code>FINE</code>) by the
+ * <code>modelmapper.ModelClassGenerator</code>
+ * {@link java.util.logging.Logger}.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public class ModelClassGenerator {
+
+	/** The generated classes, shared by all the factories */
+	private static ConcurrentMap<Class, Class> generated =
+		new ConcurrentHashMap<Class, Class>();
+
+	private static final java.util.logging.Logger log =
+		java.util.logging.Logger.getLogger(ModelClassGenerator.class.getName());
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.out.println("usage: ModelClassGenerator outputDir " +
+			"Model...");
+			return;
+		}
+
+		for (int i = 1; i < args.length; i++) {
+			Class type = null;
+
+			try { type = Class.forName(args[i]);
+			} catch (ClassNotFoundException e) {
+				System.out.println("Class " + args[i] +" doesn't exist.");
+				continue;
+			}
+
+			String name = className(type);
+			File file = new File(args[0], name.replace('.', '/') + ".java");
+			file.getParentFile().mkdirs();
+
+			Writer out = new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8");
+
+			try { out.write(generateSource(type, implementation(type)));
+			} finally { out.close(); }
+
+			System.out.println("generated " + file);
+		}
+	}
+
+	/**
+	 * Returns the generated class for <code>type</code>, built on top of
+	 * <code>base</code>. A class generated at build time is used if it
+	 * exists, otherwise the class is compiled.
+	 * @return The generated class, or <code>null</code> if it's not possible
+	 * to generate it (e.g. no compiler is available).
+	 */
+	protected static Class load(Class type, Class base) {
+
+		Class back = generated.get(type);
+		if (back != null) return back.getSuperclass() == base ? back : null;
+
+		try {
+			back = Class.forName(className(type), true, type.getClassLoader());
+			if (back.getSuperclass() != base || !type.isAssignableFrom(back))
+				back = null;
+
+		} catch (ClassNotFoundException e) { back = null; }
+
+		if (back == null && accessible(type, base)) back = compile(type, base);
+		if (back == null) return null;
+
+		Class prev = generated.putIfAbsent(type, back);
+		return prev == null ? back : prev;
+	}
+
+	/**
+	 * The {@link Connection} of a getter, used by the generated classes.
+	 */
+	public static Connection connection(Class type, String getter) {
+		try { return type.getMethod(getter).getAnnotation(Connection.class);
+		} catch (NoSuchMethodException e) {
+			throw new ModelRuntimeException(e.getMessage());
+		}
+	}
+
+	/**
+	 * The name of the generated class: <code>InterfaceName + Generated</code>
+	 * in the package of the interface.
+	 */
+	protected static String className(Class type) {
+		Package pkg = type.getPackage();
+		String pkgN = pkg == null ? "" : pkg.getName();
+
+		String name = type.getName().substring(
+			pkgN.length() == 0 ? 0 : pkgN.length() + 1).replace('$', '_');
+
+		return (pkgN.length() == 0 ? "" : pkgN + ".") + name +
+			CommonStatic.getGeneratedSuffix();
+	}
+
+	/* The implementation class, as in the Cache */
+	private static Class implementation(Class type) {
+		Package pkg = type.getPackage();
+		String pkgN = pkg == null || pkg.getName().length() == 0 ?
+			"" : pkg.getName() + ".";
+
+		try {
+			return Class.forName(pkgN + CommonStatic.tableName(type) +
+				CommonStatic.getImplementationSuffix());
+
+		} catch (ClassNotFoundException e) { return ModelProxy.class; }
+	}
+
+	/**
+	 * Generates the source of the concrete class for <code>type</code>.
+	 * @param type The model interface.
+	 * @param base The implementation class it extends.
+	 */
+	protected static String generateSource(Class type, Class base) {
+
+		String name = className(type);
+		int dot = name.lastIndexOf('.');
+
+		StringBuilder s = new StringBuilder();
+		StringBuilder statics = new StringBuilder();
+
+		s.append("// Generated by modelmapper.ModelClassGenerator, ");
+		s.append("do not edit.\n\n");
+
+		if (dot != -1) s.append("package ").append(name, 0, dot).append(";\n\n");
+
+		s.append("public class ").append(name.substring(dot + 1));
+		s.append(" extends ").append(base.getCanonicalName());
+		s.append(" implements ").append(type.getCanonicalName()).append(" {\n");
+
+		Set<String> signatures = new HashSet<String>();
+		List<Class> supers = CommonStatic.getSupers(type);
+
+		for (Method m : type.getMethods()) {
+
+			if (Modifier.isStatic(m.getModifiers()) || m.isDefault()) continue;
+			if (implemented(base, m)) continue;
+			if (!signatures.add(m.getName() +
+				Arrays.toString(m.getParameterTypes()))) continue;
+
+			s.append("\n\tpublic ").append(typeName(m.getReturnType()));
+			s.append(" ").append(m.getName()).append("(");
+
+			Class[] params = m.getParameterTypes();
+			for (int i = 0; i < params.length; i++)
+				s.append(i == 0 ? "" : ", ").append(typeName(params[i]))
+				 .append(" a").append(i);
+
+			s.append(")");
+
+			Class[] exceptions = m.getExceptionTypes();
+			for (int i = 0; i < exceptions.length; i++)
+				s.append(i == 0 ? " throws " : ", ")
+				 .append(exceptions[i].getCanonicalName());
+
+			s.append(" {\n\t\t");
+			body(s, statics, type, supers, m);
+			s.append("\n\t}\n");
+		}
+
+		s.append(statics).append("}\n");
+		return s.toString();
+	}
+
+	/* The body of a generated method */
+	private static void body(StringBuilder s, StringBuilder statics,
+	Class type, List<Class> supers, Method m) {
+
+		Class decl = m.getDeclaringClass();
+		Class rT = m.getReturnType();
+		boolean getter = CommonStatic.isAGetter(m) &&
+			m.getParameterTypes().length == 0 && rT != Void.TYPE;
+		boolean setter = CommonStatic.isASetter(m) &&
+			m.getParameterTypes().length == 1;
+		boolean connection = m.isAnnotationPresent(Connection.class);
+
+		String field = getter || setter ? CommonStatic.fieldName(m) : null;
+
+		/* Connections: lazy fetch, invoked by this instance */
+		if (getter && connection) {
+			String c = "C_" + m.getName();
+
+			statics.append("\n\tprivate static final ");
+			statics.append(Connection.class.getCanonicalName()).append(" ");
+			statics.append(c).append(" =\n\t\t");
+			statics.append(ModelClassGenerator.class.getName());
+			statics.append(".connection(").append(decl.getCanonicalName());
+			statics.append(".class, \"").append(m.getName()).append("\");\n");
+
+			if (rT.isArray()) s.append("return (").append(typeName(rT))
+				.append(") getConnectionArray(\"").append(field).append("\", ")
+				.append(typeName(rT.getComponentType())).append(".class, ")
+				.append(c).append(");");
+
+			else s.append("return getConnection(\"").append(field)
+				.append("\", ").append(typeName(rT)).append(".class, ")
+				.append(c).append(");");
+
+			return;
+		}
+
+		/* Inherited: delegated to the superclass instance */
+		if (decl != type && Model.class.isAssignableFrom(decl) &&
+			!decl.equals(Model.class) && !(setter && isConnection(m)))
+
+			for (Class sC : supers) if (decl.isAssignableFrom(sC)) {
+				if (rT != Void.TYPE) s.append("return ");
+
+				s.append("((").append(sC.getCanonicalName())
+				 .append(") supers.get(").append(sC.getCanonicalName())
+				 .append(".class)).").append(m.getName()).append("(");
+
+				for (int i = 0; i < m.getParameterTypes().length; i++)
+					s.append(i == 0 ? "" : ", ").append("a").append(i);
+
+				s.append(");");
+				return;
+			}
+
+		int slot = decl == type ? ModelLayout.of(type).slot(field) : -1;
+
+		/* Own fields: slot access */
+		if ((getter || setter) && slot >= 0) {
+			String c = "S_" + field;
+			Class fT = ModelLayout.of(type).type(slot);
+			String kind = kind(fT);
+
+			if (statics.indexOf(" " + c + " =") == -1) {
+				statics.append("\n\tprivate static final int ").append(c);
+				statics.append(" =\n\t\t").append(ModelLayout.class.getName());
+				statics.append(".of(").append(type.getCanonicalName());
+				statics.append(".class).slot(\"").append(field);
+				statics.append("\");\n");
+			}
+
+			/* partially loaded (see Finder.select) */
+			if (getter)
+				s.append("if (partial && !fields.has(").append(c)
+				 .append(")) loadFields();\n\t\t");
+
+			if (getter && kind != null)
+				s.append("return fields.get").append(kind).append("(")
+				 .append(c).append(");");
+
+			else if (getter) {
+				s.append("Object v = fields.getValue(").append(c).append(");");
+				s.append("\n\t\treturn ").append(unbox(rT, "v")).append(";");
+
+			} else {
+				s.append("fields.set").append(kind == null ? "Value" : kind)
+				 .append("(").append(c).append(", a0);");
+				s.append("\n\t\tdirty = true;");
+			}
+
+			return;
+		}
+
+		if (setter) {
+			s.append("set(\"").append(field).append("\", a0);");
+			return;
+		}
+
+		s.append("throw new ").append(ModelRuntimeException.class.getName());
+		s.append("(\"Method ").append(m.getName());
+		s.append(" not found in target \" + getClass());");
+	}
+
+	/* Checks if the setter is paired with a Connection getter */
+	private static boolean isConnection(Method setter) {
+		String field = CommonStatic.fieldName(setter);
+
+		for (String prefix : new String[] {"get", "is"})
+			try {
+				return setter.getDeclaringClass().getMethod(prefix + field).
+					isAnnotationPresent(Connection.class);
+
+			} catch (NoSuchMethodException e) { }
+
+		return false;
+	}
+
+	/* Checks if the base class already implements the method */
+	private static boolean implemented(Class base, Method m) {
+		try {
+			Method b = base.getMethod(m.getName(), m.getParameterTypes());
+			return !Modifier.isAbstract(b.getModifiers());
+
+		} catch (NoSuchMethodException e) { return false; }
+	}
+
+	private static String typeName(Class type) {
+		return type.getCanonicalName();
+	}
+
+	/* The typed FieldMap accessor of a slot, null for getValue/setValue */
+	private static String kind(Class type) {
+		if (type == Integer.TYPE) return "Int";
+		if (type == Long.TYPE) return "Long";
+		if (type == Double.TYPE) return "Double";
+
+		return null;
+	}
+
+	/* The (un)boxing of a field value */
+	private static String unbox(Class type, String v) {
+
+		if (!type.isPrimitive())
+			return "(" + typeName(type) + ") " + v;
+
+		if (type == Boolean.TYPE)
+			return v + " != null && ((Boolean) " + v + ").booleanValue()";
+
+		if (type == Character.TYPE)
+			return v + " == null ? '\\0' : ((Character) " + v + ").charValue()";
+
+		return v + " == null ? 0 : ((Number) " + v + ")." + type.getName() +
+			"Value()";
+	}
+
+	/*
+	 * The generated class is defined by a new class loader, so the model
+	 * and all the types it references must be public.
+	 */
+	private static boolean accessible(Class type, Class base) {
+
+		if (!Modifier.isPublic(type.getModifiers()) ||
+			!Modifier.isPublic(base.getModifiers())) return false;
+
+		try {
+			if (!Modifier.isPublic(base.getConstructor().getModifiers()))
+				return false;
+
+		} catch (NoSuchMethodException e) { return false; }
+
+		for (Method m : type.getMethods()) {
+			List<Class> used = new ArrayList<Class>();
+			used.add(m.getReturnType());
+			used.addAll(Arrays.asList(m.getParameterTypes()));
+
+			for (Class u : used) {
+				while (u.isArray()) u = u.getComponentType();
+				if (!u.isPrimitive() && !Modifier.isPublic(u.getModifiers()))
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Compiles the generated source in memory and defines the class.
+	 * @return The class, or <code>null</code> if the compilation fails.
+	 */
+	private static Class compile(Class type, Class base) {
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) return null;
+
+		final String name = className(type);
+		final String source = generateSource(type, base);
+		final Map<String, ByteArrayOutputStream> output =
+			new HashMap<String, ByteArrayOutputStream>();
+
+		JavaFileObject src = new SimpleJavaFileObject(URI.create("string:///" +
+		name.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+			public CharSequence getCharContent(boolean ignoreErrors) {
+				return source;
+			}
+		};
+
+		JavaFileManager fm = new ForwardingJavaFileManager<JavaFileManager>(
+		compiler.getStandardFileManager(null, null, null)) {
+			public JavaFileObject getJavaFileForOutput(Location location,
+			final String className, JavaFileObject.Kind kind,
+			FileObject sibling) {
+
+				return new SimpleJavaFileObject(URI.create("mem:///" +
+				className.replace('.', '/') + kind.extension), kind) {
+					public OutputStream openOutputStream() {
+						ByteArrayOutputStream out = new ByteArrayOutputStream();
+						output.put(className, out);
+						return out;
+					}
+				};
+			}
+		};
+
+		StringWriter diagnostics = new StringWriter();
+		List<String> options = Arrays.asList("-classpath",
+			classpath(type, base), "-proc:none", "-nowarn");
+
+		boolean ok = compiler.getTask(diagnostics, fm, null, options, null,
+			Collections.singletonList(src)).call();
+
+		try { fm.close(); } catch (IOException e) { }
+
+		if (!ok || !output.containsKey(name)) {
+			log.fine(type.getName() + " falls back to the proxy\n" +
+				diagnostics);
+			return null;
+		}
+
+		byte[] bytes = output.get(name).toByteArray();
+
+		try { return new Loader(type.getClassLoader()).define(name, bytes);
+		} catch (LinkageError e) { return null; }
+	}
+
+	/* The class path of the application, plus the models locations */
+	private static String classpath(Class... classes) {
+
+		Set<String> entries = new LinkedHashSet<String>();
+		entries.add(System.getProperty("java.class.path"));
+
+		List<Class> all = new ArrayList<Class>(Arrays.asList(classes));
+		all.add(ModelProxy.class);
+
+		for (Class c : all)
+			try {
+				entries.add(new File(c.getProtectionDomain().getCodeSource().
+					getLocation().toURI()).getPath());
+
+			} catch (Exception e) { /* no code source */ }
+
+		String back = "";
+		for (String e : entries)
+			back += (back.length() == 0 ? "" : File.pathSeparator) + e;
+
+		return back;
+	}
+
+	/**
+	 * Defines the generated classes, child of the models class loader.
+	 */
+	private static class Loader extends ClassLoader {
+
+		Loader(ClassLoader parent) { super(parent); }
+
+		Class define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -18,8 +18,134 @@ public abstract class ModelFactory {
 	
 	private Cache cache = new Cache(this);
 	
+	/* concrete generated classes instead of proxies */
+	private boolean generatedModels = false;
+	
+	/* runs the asynchronous finds (null: the default executor) */
+	private java.util.concurrent.Executor executor = null;
+	
 	public Cache getCache() { return cache; }	
 	
+	/**
+	 * Enables the {@link ModelClassGenerator}: the models are instances of 
+	 * a generated class that implements the interface, instead of 
+	 * {@link java.lang.reflect.Proxy} instances. Models that can't be 
+	 * generated still use the proxy.
+	 * It has to be set before the first model of a type is created.
+	 */
+	public void setGeneratedModels(boolean generatedModels) {
+		this.generatedModels = generatedModels;
+	}
+	
+	public boolean generatedModels() { return generatedModels; }
+	
+	/**
+	 * Sets the executor of the asynchronous operations of the finders 
+	 * (<code>Finder.allAsync</code>, ...), <code>null</code> for the 
+	 * default one: a virtual thread per operation on the runtimes that 
+	 * support them, a shared pool of daemon threads otherwise.
+	 */
+	public void setExecutor(java.util.concurrent.Executor executor) {
+		this.executor = executor;
+	}
+	
+	public java.util.concurrent.Executor getExecutor() {
+		return executor != null ? executor : DefaultExecutor.INSTANCE;
+	}
+	
+	/* Lazily created the first time an asynchronous find runs */
+	private static class DefaultExecutor {
+		
+		static final java.util.concurrent.Executor INSTANCE = create();
+		
+		private static java.util.concurrent.Executor create() {
+			
+			/* Executors.newVirtualThreadPerTaskExecutor(), if available */
+			try {
+				Method m = java.util.concurrent.Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor");
+				
+				return (java.util.concurrent.Executor) m.invoke(null);
+				
+			} catch (Exception e) { }
+			
+			return java.util.concurrent.Executors.newCachedThreadPool(
+				new java.util.concurrent.ThreadFactory() {
+					private int count = 0;
+					
+					public synchronized Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "modelmapper-async-" + count++);
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		}
+	}
+	
+	/**
+	 * Prepares the given models before they're used: validates them, 
+	 * builds their metadata and does the per-model work of the factory 
+	 * (see <code>prepare</code>), so the first finds don't pay for it.
+	 * The models are prepared in parallel, by the executor of the factory.
+	 * @throws ModelRuntimeException The first exception thrown preparing 
+	 * a model (e.g. a {@link MalformedModelException}), after all of them 
+	 * have been prepared.
+	 */
+	public void warmUp(Class<? extends Model>... models) {
+		
+		List<java.util.concurrent.CompletableFuture<Void>> tasks = 
+			new ArrayList<java.util.concurrent.CompletableFuture<Void>>();
+		
+		for (final Class type : models)
+			tasks.add(java.util.concurrent.CompletableFuture.runAsync(
+				new Runnable() {
+					public void run() { prepare(type); }
+				}, getExecutor()));
+		
+		RuntimeException failure = null;
+		
+		for (java.util.concurrent.CompletableFuture<Void> t : tasks) {
+			try { t.join(); } 
+			catch (java.util.concurrent.CompletionException e) {
+				if (failure != null) continue;
+				
+				failure = e.getCause() instanceof RuntimeException ? 
+					(RuntimeException) e.getCause() : 
+					new ModelRuntimeException(e.getCause().getMessage());
+			}
+		}
+		
+		if (failure != null) throw failure;
+	}
+	
+	/**
+	 * Warms up all the model interfaces of the given packages (and of 
+	 * their subpackages), found with the {@link ModelScanner}.
+	 * @return The models found.
+	 * @see #warmUp
+	 */
+	public List<Class<? extends Model>> warmUpPackages(String... packages) {
+		
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) loader = ModelFactory.class.getClassLoader();
+		
+		List<Class<? extends Model>> models = 
+			ModelScanner.scan(loader, packages);
+		
+		warmUp(models.toArray(new Class[models.size()]));
+		return models;
+	}
+	
+	/**
+	 * Prepares a model for <code>warmUp</code>: this implementation 
+	 * validates it (and its supers) by creating an instance, and builds 
+	 * its metadata.
+	 */
+	protected void prepare(Class type) {
+		ModelMetadata.of(type);
+		create(type);
+	}
+	
 	public <T extends Model> T create(Class<T> type) {
 		return create(type, getCache().createInstance(type));
 	}
@@ -29,12 +155,15 @@ public abstract class ModelFactory {
 	 * implementation <code>impl</code>
 	 * @param type The model type
 	 * @param impl The given implementation 
-	 * @return A model @link{java.lang.reflect.Proxy}
+	 * @return A model @link{java.lang.reflect.Proxy}, or <code>impl</code> 
+	 * itself if it's a generated class that implements <code>type</code>
 	 */
 	protected <T extends Model> T create(Class<T> type, ModelProxy impl) {
 		
 		T back = null;
-		try { 
+		if (type.isInstance(impl)) back = type.cast(impl);
+		
+		else try { 
 			back = (T) Proxy.newProxyInstance(type.getClassLoader(), 
 					   new Class[] {type}, impl);
 					
@@ -47,18 +176,19 @@ public abstract class ModelFactory {
 		
 		/* sounds a little bit recoursive, doesn't it? */
 		impl.implementation = impl;
+		impl.model = back;
 		
 		/* for handling multiple inheritance */
 		getCache().initSupers(type, impl);
 				
-		/* timestamp informations */
+		/* timestamp informations (the loaded ones may be not selected) */
 		java.sql.Timestamp now = 
 			new java.sql.Timestamp((new Date()).getTime());
 		
-		if (!impl.fields.containsKey("CreatedAt"))
+		if (impl.newRecord && !impl.fields.containsKey("CreatedAt"))
 			impl.fields.put("CreatedAt", now);
 			
-		if (!impl.fields.containsKey("UpdatedAt"))
+		if (impl.newRecord && !impl.fields.containsKey("UpdatedAt"))
 			impl.fields.put("UpdatedAt", now);
 			
 		/* Finally */	
@@ -71,6 +201,16 @@ public abstract class ModelFactory {
 	 */
 	public abstract void save(Model o);
 	
+	/**
+	 * Saves all the given models, grouping the writes per table in order 
+	 * to persist thousands of rows per round trip. 
+	 * Models that don't pass <code>validate()</code> are skipped.
+	 * @param models varargs array of models to save. Method returns 
+	 * immediately if length == 0.
+	 * @throws ModelRuntimeException
+	 */
+	public abstract void saveAll(Model... models);
+	
 	/**
 	 * Deletes the specified entities from the database. 
 	 * This method does attempt to group the deletes on a per-type basis.
@@ -114,6 +254,99 @@ public abstract class ModelFactory {
 	public abstract <T extends Model> T[] advancedFind(Class<T> type, 
 	String criteria, String orderBy, boolean desc, int limit, 
 	String[] includedConnections, Object[] params);
+	
+	/**
+	 * Like <code>advancedFind</code>, but only the given fields are read 
+	 * from the datasource. The other fields of the models are loaded when
+	 * they're first read (see <code>loadFields</code>).
+	 * <p>Factories that can't select a subset of the fields read them 
+	 * all.</p>
+	 * @param fields The fields to read.
+	 * @see Finder#select
+	 */
+	public <T extends Model> T[] advancedSelect(Class<T> type, 
+	String[] fields, String criteria, String orderBy, boolean desc, 
+	int limit, Object[] params) {
+		return advancedFind(type, criteria, orderBy, desc, limit, null, params);
+	}
+	
+	/**
+	 * Loads the fields of a partially loaded instance (and of its super 
+	 * instances) that haven't been read by <code>advancedSelect</code>.
+	 * @param m The instance.
+	 */
+	protected void loadFields(ModelProxy m) { m.partial = false; }
+	
+	/**
+	 * Like <code>advancedFind</code>, but the results can be kept in a 
+	 * cache for <code>ttl</code> milliseconds. The cached results are 
+	 * invalidated when the factory writes or deletes a row of one of the 
+	 * tables read by the query.
+	 * <p>Factories without a cache execute the query every time.</p>
+	 * @param ttl The time to live of the cached results, in milliseconds.
+	 * @see Finder#cached
+	 */
+	public <T extends Model> T[] cachedFind(Class<T> type, String criteria, 
+	String orderBy, boolean desc, int limit, Object[] params, long ttl) {
+		return advancedFind(type, criteria, orderBy, desc, limit, null, params);
+	}
+		
+	/**
+	 * Like <code>advancedFind</code>, but instead of materializing all the 
+	 * results it returns a forward-only iterator that packs them while the 
+	 * rows are read from the datasource.
+	 * @param type the type of the entities to retrieve.
+	 * @param criteria A parameterized search statement.
+	 * @param orderBy The key field for ordering the result set
+	 * @param desc <code>true</code> for descending, <code>false</code>
+	 * for ascending.
+	 * @param limit A limit to the results number (0 for no limit).
+	 * @param params The parameters of the search.
+	 * @return A {@link ModelIterator} that must be closed after use.
+	 */
+	public abstract <T extends Model> ModelIterator<T> advancedIterator(
+	Class<T> type, String criteria, String orderBy, boolean desc, int limit, 
+	Object[] params);
+	
+	/**
+	 * Computes an aggregate function over the records of the given type 
+	 * that match the criteria, in the datasource (no model is packed).
+	 * @param type the type of the entities to aggregate.
+	 * @param function One of <code>COUNT</code>, <code>SUM</code>, 
+	 * <code>AVG</code>, <code>MIN</code>, <code>MAX</code>.
+	 * @param field The aggregated field of the model (<code>null</code> 
+	 * for <code>COUNT(*)</code>).
+	 * @param criteria A parameterized search statement.
+	 * @param params The parameters of the search.
+	 * @return The value, <code>null</code> if there are no records (but 
+	 * for <code>COUNT</code>).
+	 * @throws ModelRuntimeException If the function or the field aren't
+	 * valid.
+	 */
+	public abstract Object aggregate(Class type, String function, 
+	String field, String criteria, Object[] params);
+	
+	/**
+	 * Checks if any record of the given type matches the criteria, 
+	 * without retrieving it.
+	 * @param type the type of the entities to search.
+	 * @param criteria A parameterized search statement.
+	 * @param params The parameters of the search.
+	 */
+	public abstract boolean exists(Class type, String criteria, 
+	Object[] params);
+	
+	/**
+	 * Returns the criteria of a keyset (seek) pagination: the records 
+	 * whose key follows the given one, in the order of the key columns.
+	 * @param columns The key columns (the order field, then the id).
+	 * @param greater <code>true</code> for the greater keys, 
+	 * <code>false</code> for the lesser ones.
+	 * @return A criteria with a <code>?</code> parameter for every column.
+	 * @see Finder#pageAfter
+	 */
+	protected abstract String seekCriteria(List<String> columns, 
+	boolean greater);
 		
 	/** 
 	 * This method is responsable of fetching the requested model after a 
@@ -127,4 +360,40 @@ public abstract class ModelFactory {
 	 */
 	protected abstract Model[] fetch(Class toFetch, Model invokedBy, 
 	Connection connection);
+	
+	/**
+	 * Fetches the same connection for several instances of a model, and 
+	 * adds the fetched models to each of them with 
+	 * <code>ModelProxy.addModels</code>.
+	 * <p>It's used when a connection of an instance is read, for all the 
+	 * instances returned with it by a find (so a loop over the results 
+	 * doesn't execute a query per instance). This implementation fetches 
+	 * them one at a time.</p>
+	 * @param toFetch The model interfaces of the instances to fetch.
+	 * @param field The connection field.
+	 * @param invokedBy The instances, all of the same model.
+	 * @param connection The {@link Connection} of the field.
+	 */
+	protected void fetchAll(Class toFetch, String field, 
+	List<ModelProxy> invokedBy, Connection connection) {
+		
+		for (ModelProxy m : invokedBy) 
+			m.addModels(field, fetch(toFetch, m, connection), true);
+	}
+	
+	/**
+	 * Fetches several connections for the same instances (e.g. the 
+	 * included connections of a {@link Finder}), as <code>fetchAll</code>
+	 * does for one. This implementation fetches them one after the other.
+	 * @param toFetch The model interfaces of the connections.
+	 * @param fields The connection fields.
+	 * @param invokedBy The instances, all of the same model.
+	 * @param connections The {@link Connection}s of the fields.
+	 */
+	protected void fetchAll(Class[] toFetch, String[] fields, 
+	List<ModelProxy> invokedBy, Connection[] connections) {
+		
+		for (int i = 0; i < fields.length; i++) 
+			fetchAll(toFetch[i], fields[i], invokedBy, connections[i]);
+	}
 }
\ No newline at end of file
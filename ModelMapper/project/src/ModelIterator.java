@@ -0,0 +1,30 @@
+// 
+//  ModelIterator
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import java.util.*;
+
+/**
+ * A forward-only {@link Iterator} over the results of a find. 
+ * The models are packed one at a time while the underlying cursor is 
+ * read, so any number of rows can be scanned in constant memory.
+ * <p>The iterator holds a database connection until it's exhausted or
+ * closed: always close it (e.g. with a <code>try/finally</code> block) if 
+ * the iteration can stop early.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public interface ModelIterator<T extends Model> 
+extends Iterator<T>, java.io.Closeable {
+	
+	/**
+	 * Releases the cursor and the connection. Calling it more than once, 
+	 * or after the last element, has no effect.
+	 */
+	public void close();
+}
@@ -0,0 +1,198 @@
+// 
+//  ModelLayout
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import modelmapper.annotation.*;
+
+import java.util.*;
+import java.lang.reflect.*;
+
+/**
+ * The storage layout of a {@link Model} type: each field (the columns of
+ * the model table) is assigned a slot index, and the <code>int</code>,
+ * <code>long</code> and <code>double</code> fields are stored in primitive
+ * arrays by the {@link FieldMap} of the instances.
+ * <p>The keys of the owners of the <code>BelongsTo</code> connections are
+ * columns of the table too, so they have a slot (see
+ * <code>isForeignKey</code>).</p>
+ * <p>Layouts depend only on the model interface, so they're computed once
+ * and shared by all the factories. The slots are sorted by field name.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public final class ModelLayout {
+
+	/** Slot kinds */
+	public static final int OBJECT = 0, INT = 1, LONG = 2, DOUBLE = 3;
+
+	private static final ClassValue<ModelLayout> layouts =
+		new ClassValue<ModelLayout>() {
+			protected ModelLayout computeValue(Class type) {
+				return new ModelLayout(type);
+			}
+		};
+
+	private final Class type;
+
+	private final String[] names;
+	private final Class[] types;
+	private final int[] kinds;
+
+	/* BelongsTo keys: columns of the table, but not fields of the model */
+	private final boolean[] foreignKeys;
+
+	/* Blob and Clob fields not marked as Eager */
+	private final boolean[] deferred;
+	private final boolean hasDeferred;
+
+	/* index of each slot in the array of its kind */
+	private final int[] offsets;
+	private final int[] counts = new int[4];
+
+	private final Map<String, Integer> slots = new HashMap<String, Integer>();
+	private final Map<String, Class> fieldsTypes;
+
+	/**
+	 * Returns the layout of the given {@link Model} interface.
+	 */
+	public static ModelLayout of(Class type) { return layouts.get(type); }
+
+	private ModelLayout(Class type) {
+		this.type = type;
+
+		Map<String, Class> tMap = new TreeMap<String, Class>();
+		Map<String, Class> keys = new TreeMap<String, Class>();
+		Set<String> eager = new HashSet<String>();
+
+		for (Method m : CommonStatic.getGetters(type)) {
+			Connection c = m.getAnnotation(Connection.class);
+
+			if (m.isAnnotationPresent(Eager.class))
+				eager.add(CommonStatic.fieldName(m));
+
+			if (c == null)
+				tMap.put(CommonStatic.fieldName(m), m.getReturnType());
+
+			/* the key of the owner, a column of this table */
+			else if (c.type().equals(ConnectionType.BelongsTo))
+				keys.put(CommonStatic.fieldName(m), m.getReturnType());
+		}
+
+		/* In inheritance case, the key of the super tables rows */
+		if (CommonStatic.getSupers(type).size() != 0) {
+			String id = CommonStatic.getModelId(type);
+
+			if (!tMap.containsKey(id))
+				tMap.put(id, CommonStatic.getModelIdType(type));
+		}
+
+		tMap.put("CreatedAt", java.sql.Timestamp.class);
+		tMap.put("UpdatedAt", java.sql.Timestamp.class);
+
+		fieldsTypes = Collections.unmodifiableMap(
+			new LinkedHashMap<String, Class>(tMap));
+
+		for (String k : keys.keySet())
+			if (!tMap.containsKey(k)) tMap.put(k, keys.get(k));
+
+		int size = tMap.size();
+		names = new String[size];
+		types = new Class[size];
+		kinds = new int[size];
+		offsets = new int[size];
+		foreignKeys = new boolean[size];
+		deferred = new boolean[size];
+
+		boolean lobs = false;
+
+		int slot = 0;
+		for (Map.Entry<String, Class> e : tMap.entrySet()) {
+			names[slot] = e.getKey();
+			types[slot] = e.getValue();
+			foreignKeys[slot] = !fieldsTypes.containsKey(e.getKey());
+			deferred[slot] = isLob(e.getValue()) && 
+				!eager.contains(e.getKey());
+
+			if (deferred[slot]) lobs = true;
+			kinds[slot] = foreignKeys[slot] ? OBJECT : kind(e.getValue());
+			offsets[slot] = counts[kinds[slot]]++;
+
+			slots.put(names[slot], slot++);
+		}
+
+		hasDeferred = lobs;
+	}
+
+	private static boolean isLob(Class type) {
+		return type == java.sql.Blob.class || type == java.sql.Clob.class;
+	}
+
+	private static int kind(Class type) {
+		if (type == Integer.TYPE) return INT;
+		if (type == Long.TYPE) return LONG;
+		if (type == Double.TYPE) return DOUBLE;
+
+		return OBJECT;
+	}
+
+	/** The model interface */
+	public Class type() { return type; }
+
+	/** The number of slots */
+	public int size() { return names.length; }
+
+	/**
+	 * Returns the slot of a field.
+	 * @return The slot index, <code>-1</code> if the field isn't a column
+	 * of this model.
+	 */
+	public int slot(String field) {
+		Integer slot = slots.get(field);
+		return slot == null ? -1 : slot;
+	}
+
+	public String name(int slot) { return names[slot]; }
+
+	public Class type(int slot) { return types[slot]; }
+
+	/** One of <code>OBJECT</code>, <code>INT</code>, <code>LONG</code>,
+	 * <code>DOUBLE</code> */
+	public int kind(int slot) { return kinds[slot]; }
+
+	/**
+	 * Checks if the slot holds the key of the owner of a
+	 * <code>BelongsTo</code> connection (its type is the owner model).
+	 * These slots are not part of <code>fieldsTypes()</code>.
+	 */
+	public boolean isForeignKey(int slot) { return foreignKeys[slot]; }
+
+	/** Checks if the slot is a <code>Blob</code> or <code>Clob</code> */
+	public boolean isLob(int slot) { return isLob(types[slot]); }
+
+	/**
+	 * Checks if the slot is a LOB that is not selected with its row (it's
+	 * not marked as {@link Eager}).
+	 */
+	public boolean isDeferred(int slot) { return deferred[slot]; }
+
+	/** Checks if any slot is deferred */
+	public boolean hasDeferred() { return hasDeferred; }
+
+	/* Index in the array of the slot kind */
+	int offset(int slot) { return offsets[slot]; }
+
+	/* Number of slots of the given kind */
+	int count(int kind) { return counts[kind]; }
+
+	/** The type of each field, in slot order (without the owners keys) */
+	public Map<String, Class> fieldsTypes() { return fieldsTypes; }
+
+	public String toString() {
+		return "ModelLayout#<" + type.getName() + " " + fieldsTypes + ">";
+	}
+}
@@ -0,0 +1,203 @@
+// 
+//  ModelMetadata
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import modelmapper.annotation.*;
+import modelmapper.exception.*;
+
+import java.util.*;
+import java.lang.reflect.*;
+
+/**
+ * The mapping information of a {@link Model} interface read by reflection:
+ * the table name, the id, the super models, the owners and the 
+ * connections. The field types and the storage slots are described by 
+ * its {@link ModelLayout}.
+ * <p>It's immutable, built once the first time the model is seen and 
+ * shared by all the factories and threads (reading it takes no lock). 
+ * The {@link Cache} of the factories is a view over it.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public final class ModelMetadata {
+
+	private static final ClassValue<ModelMetadata> metadata =
+		new ClassValue<ModelMetadata>() {
+			protected ModelMetadata computeValue(Class type) {
+				return new ModelMetadata(type);
+			}
+		};
+
+	private final Class type;
+	private final String tableName;
+
+	/* the id, or the exception thrown looking for it (an invalid model) */
+	private final String modelId;
+	private final Class modelIdType;
+	private final RuntimeException invalidId;
+
+	private final List<Class> supers;
+	private final List<Class> allSupers;
+
+	private final List<String> belongsTo;
+	private final List<Class> related;
+
+	/* connection field (lowercase) -> connected model, array connection */
+	private final Map<String, Class> connectionTypes;
+	private final Map<String, Boolean> arrayConnections;
+	private final RuntimeException invalidGetters;
+
+	/**
+	 * Returns the metadata of the given {@link Model} interface.
+	 * @throws IllegalArgumentException If it's not a model.
+	 */
+	public static ModelMetadata of(Class type) { return metadata.get(type); }
+
+	private ModelMetadata(Class type) {
+		this.type = type;
+		this.tableName = CommonStatic.tableName(type);
+
+		String id = null;
+		Class idType = null;
+		RuntimeException invalid = null;
+
+		/* reported when the id is needed, as the validation does */
+		try {
+			id = CommonStatic.getModelId(type);
+			idType = CommonStatic.getModelIdType(type);
+
+		} catch (RuntimeException e) { invalid = e; }
+
+		this.modelId = id;
+		this.modelIdType = idType;
+		this.invalidId = invalid;
+
+		this.supers = 
+			Collections.unmodifiableList(CommonStatic.getSupers(type));
+		this.allSupers = 
+			Collections.unmodifiableList(CommonStatic.getAllSupers(type));
+
+		List<String> owners = new ArrayList<String>();
+		List<Class> rel = new ArrayList<Class>();
+
+		for (Method g : CommonStatic.getDeclaredGetters(type)) {
+			Connection c = g.getAnnotation(Connection.class);
+			if (c == null) continue;
+
+			if (c.type().equals(ConnectionType.BelongsTo)) 
+				owners.add(CommonStatic.fieldName(g));
+
+			Class t = g.getReturnType();
+			t = t.isArray() ? t.getComponentType() : t;
+
+			if (!rel.contains(t)) rel.add(t);
+		}
+
+		for (Class s : supers) owners.addAll(of(s).belongsTo);
+
+		this.belongsTo = Collections.unmodifiableList(owners);
+		this.related = Collections.unmodifiableList(rel);
+
+		Map<String, Class> cTypes = new HashMap<String, Class>();
+		Map<String, Boolean> arrays = new HashMap<String, Boolean>();
+
+		invalid = null;
+
+		/* 
+		 * the first getter wins, as in the search by name; a malformed 
+		 * model (e.g. no id for multiple inheritance) is reported when a 
+		 * connection is looked up, not by the other lookups
+		 */
+		try {
+			for (Method g : CommonStatic.getAllGetters(type)) {
+				if (!g.isAnnotationPresent(Connection.class)) continue;
+
+				String field = g.getName().substring(3).toLowerCase();
+				if (cTypes.containsKey(field)) continue;
+
+				Class t = g.getReturnType();
+
+				cTypes.put(field, t.isArray() ? t.getComponentType() : t);
+				arrays.put(field, t.isArray());
+			}
+
+		} catch (RuntimeException e) { invalid = e; }
+
+		this.connectionTypes = Collections.unmodifiableMap(cTypes);
+		this.arrayConnections = Collections.unmodifiableMap(arrays);
+		this.invalidGetters = invalid;
+	}
+
+	/** The model interface */
+	public Class type() { return type; }
+
+	public String tableName() { return tableName; }
+
+	/**
+	 * The name of the id field.
+	 * @throws MalformedModelRuntimeException If the model doesn't define 
+	 * a valid id.
+	 */
+	public String modelId() { 
+		if (invalidId != null) throw invalidId;
+		return modelId; 
+	}
+
+	/** The type of the id field */
+	public Class modelIdType() { 
+		if (invalidId != null) throw invalidId;
+		return modelIdType; 
+	}
+
+	/** The models extended directly */
+	public List<Class> supers() { return supers; }
+
+	/** All the models extended, directly or not */
+	public List<Class> allSupers() { return allSupers; }
+
+	/** The <code>BelongsTo</code> connection fields, also inherited */
+	public List<String> belongsTo() { return belongsTo; }
+
+	/** The models connected by the declared connections */
+	public List<Class> related() { return related; }
+
+	/**
+	 * The model connected by a connection field.
+	 * @throws ModelRuntimeException If it's not a connection field.
+	 */
+	public Class connectionType(String field) {
+		if (invalidGetters != null) throw invalidGetters;
+
+		Class t = connectionTypes.get(field.toLowerCase());
+
+		if (t == null) 
+			throw new ModelRuntimeException("Invalid field for a connection.");
+
+		return t;
+	}
+
+	/**
+	 * Checks if a connection field is an array (a <code>HasMany</code> or 
+	 * <code>ManyToMany</code> side).
+	 * @throws ModelRuntimeException If it's not a connection field.
+	 */
+	public boolean isArrayConnection(String field) {
+		if (invalidGetters != null) throw invalidGetters;
+
+		Boolean a = arrayConnections.get(field.toLowerCase());
+
+		if (a == null) 
+			throw new ModelRuntimeException("Invalid field for a connection.");
+
+		return a;
+	}
+
+	public String toString() {
+		return "ModelMetadata#<" + type.getName() + " " + tableName + ">";
+	}
+}
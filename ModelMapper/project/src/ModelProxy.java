@@ -12,6 +12,8 @@ import modelmapper.annotation.*;
 import modelmapper.exception.*;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.lang.invoke.*;
 import java.lang.reflect.*;
 
 public class ModelProxy implements Model, InvocationHandler {
@@ -19,20 +21,39 @@ public class ModelProxy implements Model, InvocationHandler {
 	protected ModelFactory factory;
 	protected Class type;
 	
-	/** contains all the fields values indexed by name */
-	protected Map<String, Object> fields = new HashMap<String, Object>();
+	/** 
+	 * contains all the fields values indexed by name, stored by slot as
+	 * described by the {@link ModelLayout} of the model type 
+	 */
+	protected FieldMap fields;
 	
+	/* concurrent: the included connections may be fetched in parallel */
 	public Map<String, List<Model>> 
-		fetched = new HashMap<String, List<Model>>();
+		fetched = new ConcurrentHashMap<String, List<Model>>();
 	
 	/* Not fetched connections, index for Id */
-	protected Map<String, Boolean> isFetched = new HashMap<String, Boolean>();
+	protected Map<String, Boolean> isFetched = 
+		new ConcurrentHashMap<String, Boolean>();
+	
+	/* The instances (and super instances) packed by the same find: their
+	 * connections are fetched together (null if it was the only result) */
+	protected List<ModelProxy> siblings;
 	
 	protected boolean dirty = true;
 	protected boolean newRecord = true;
 	
+	/* Packed from a projection: some fields (of this or of the super 
+	 * instances) are not loaded yet */
+	protected boolean partial = false;
+	
+	/* The partially loaded instance this is a super instance of */
+	protected ModelProxy derived;
+	
 	protected ModelProxy implementation;
 	
+	/* The instance handed out: the proxy, or this for generated classes */
+	protected Model model;
+	
 	/** 
 	 * Contains all the superclasses instances, used in the case this extends 
 	 * any other Model.
@@ -48,7 +69,7 @@ public class ModelProxy implements Model, InvocationHandler {
 	 * implementation.  However, it is possible to do so if absolutely
 	 * necessary.
 	 */
-	public void save() { if (validate()) factory.save(this); }
+	public void save() { factory.save(this); }
 	
 	/**
 	 * Deletes the model from the database.
@@ -56,7 +77,7 @@ public class ModelProxy implements Model, InvocationHandler {
 	 * <code>ConnectionType.Composition</code>, these will be deleted
 	 * in cascade.
 	 */
-	public void delete() {}
+	public void delete() { factory.delete(this); }
 	
 	/**
 	 * This method has to be overriden by the subclasses if they want 
@@ -106,16 +127,43 @@ public class ModelProxy implements Model, InvocationHandler {
 	 * @param returnType The expected return type.
 	 */
 	private <R extends Object> R get(String field, Class<R> returnType) {
-		Map f = this.fields();
-		if (f.containsKey(field)) return (R) f.get(field);
+		Object v = lookup(field, null, -1);
+		return v == ABSENT ? null : (R) v;
+	}
+	
+	private static final Object ABSENT = new Object();
+	
+	/* 
+	 * The value of the field as in fields() (the superclasses values 
+	 * override the own ones), without merging the maps.
+	 * The slot is used by the instance with the given layout.
+	 */
+	private Object lookup(String field, ModelLayout layout, int slot) {
+		Object back = ABSENT;
+		
+		if (slot >= 0 && fields.layout() == layout) {
+			if (fields.has(slot)) back = fields.getValue(slot);
+			
+		} else if (fields.containsKey(field)) back = fields.get(field);
+		
+		for (Model s : supers.values()) {
+			Object v = s.modelImplementation().lookup(field, layout, slot);
+			if (v != ABSENT) back = v;
+		}
 		
-		return null;
+		return back;
 	}
 	
+	/**
+	 * Loads the fields that haven't been selected by the find that packed
+	 * this instance (see <code>Finder.select</code>).
+	 */
+	protected void loadFields() { factory.loadFields(this); }
+	
 	/**
 	 * Get the connected model linked by the <code>getField</code> method.
 	 * This is uses only for */
-	private <R extends Model> R getConnection(String field, Class<R> type, 
+	protected <R extends Model> R getConnection(String field, Class<R> type, 
 	Connection c) {
 		
 		field = field.toLowerCase();
@@ -132,6 +180,17 @@ public class ModelProxy implements Model, InvocationHandler {
 		
 		field = field.toLowerCase();
 		
+		/* the siblings waiting for the same connection are fetched too */
+		if (!fetched.containsKey(field) && siblings != null) {
+			List<ModelProxy> batch = new ArrayList<ModelProxy>();
+			
+			for (ModelProxy s : siblings) 
+				if (s.type == this.type && !s.newRecord && 
+					!s.fetched.containsKey(field)) batch.add(s);
+			
+			if (batch.size() > 1) factory.fetchAll(type, field, batch, c);
+		}
+		
 		if (!fetched.containsKey(field)) { 
 			R[] objs = (R[]) factory.fetch(type, this, c);
 			
@@ -183,11 +242,12 @@ public class ModelProxy implements Model, InvocationHandler {
 
 	
 		
-	private void set(String field, Object value) {
+	protected void set(String field, Object value) {
 		if (!extendsModels() || 
 			factory.getCache().ownField(field, this.type)) { 
 				
 			fields.put(field, value); 
+			dirty = true;
 			return; 
 		}
 		
@@ -205,6 +265,25 @@ public class ModelProxy implements Model, InvocationHandler {
 		throw new ModelRuntimeException("Unable to find the field.");
 	}
 	
+	/* 
+	 * Sets the slot on the instance (this or a superclass instance) with 
+	 * the given layout.
+	 * @return false if there's no such instance.
+	 */
+	private boolean assign(ModelLayout layout, int slot, Object value) {
+		if (fields.layout() == layout) {
+			fields.setValue(slot, value);
+			dirty = true;
+			return true;
+		}
+		
+		for (Model s : supers.values())
+			if (s.modelImplementation().assign(layout, slot, value)) 
+				return true;
+			
+		return false;
+	}
+	
 	/**
 	 * A convenient method for print at screen the object status/contents
 	 * @return A string representing the object 
@@ -249,9 +328,13 @@ public class ModelProxy implements Model, InvocationHandler {
 	 * A convenient method for retriving all the fields data of the object.
 	 * Actually is not safe but it's used in several parts of the frameworkw 
 	 * for efficency issues.
+	 * The fields that haven't been loaded yet (see <code>loadFields</code>)
+	 * are loaded first.
 	 * @return A {@link Map} with the objects fields values 
 	 */
 	public Map<String, Object> fields() { 
+		if (partial) loadFields();
+		
 		if (!extendsModels()) return fields; 
 	
 		/* fields from all superclasses */
@@ -267,104 +350,178 @@ public class ModelProxy implements Model, InvocationHandler {
 	/**
 	 * Grand invokation dispatcher method. Handles all the calls to calls at 
 	 * the proxy object and dispatch them to the correct classes.
+	 * Every {@link Method} is classified only once (see {@link Dispatch}).
 	 */
-	public Object invoke(Object proxy, Method method, Object[] args) {
-
-		/* Business method logic: this should implement it */
-		if (method.isAnnotationPresent(BusinessLogic.class)) 
-			return execMethod(this, method, args);
-			
-		/* Getters */
-		if (CommonStatic.isAGetter(method)){
+	public Object invoke(Object proxy, Method method, Object[] args) 
+	throws Throwable {
 		
-			String mN = factory.getCache().fieldName(method);
-			Class  rT = method.getReturnType();
+		Dispatch d = DISPATCH.get(getClass()).get(method);
+		if (d == null) d = Dispatch.resolve(getClass(), method);
+		
+		switch (d.kind) {
 			
-			if (!method.isAnnotationPresent(Connection.class))
-				return get(mN, rT);
+			case GETTER: 
+				/* own field: direct slot access */
+				if (d.slot >= 0 && fields.layout() == d.layout && 
+					!extendsModels()) {
+					
+					if (partial && !fields.has(d.slot)) loadFields();
+					return fields.getValue(d.slot);
+				}
 				
-			else {
-				Connection c = method.getAnnotation(Connection.class);
+				Object v = lookup(d.field, d.layout, d.slot);
 				
-				if (rT.isArray()) 
-					return getConnectionArray(mN, rT.getComponentType(), c);
-					
-				else return getConnection(mN, rT, c);
-			}
-		}
-		
-		/* Setters */
-		if (CommonStatic.isASetter(method) && 
-			!method.isAnnotationPresent(Connection.class)) {
-			
-			//TODO: Checks the connections - handle them differently
-			String mN = factory.getCache().fieldName(method);		
+				if (v == ABSENT && partial) {
+					loadFields();
+					v = lookup(d.field, d.layout, d.slot);
+				}
+				
+				return v == ABSENT ? null : v;
 			
-			if (args.length != 1) 
-				throw new ModelRuntimeException("Invalid setter arguments " + 
-				"length: " + mN);
+			case CONNECTION: 
+				return getConnection(d.field, d.returnType, d.connection);
+				
+			case CONNECTION_ARRAY: 
+				return getConnectionArray(d.field, d.returnType, d.connection);
 			
-			set(mN, args[0]); return null;
+			case SETTER:
+				if (args == null || args.length != 1) 
+					throw new ModelRuntimeException("Invalid setter " + 
+					"arguments length: " + d.field);
+				
+				if (d.slot < 0 || !assign(d.layout, d.slot, args[0])) 
+					set(d.field, args[0]);
+				
+				return null;
+				
+			default: return d.invoke(this, args);
 		}
-			
-		return execMethod(this, method, args);
 	}
 	
+	/* The dispatch tables, one for each implementation class */
+	private static final ClassValue<ConcurrentMap<Method, Dispatch>> DISPATCH = 
+		new ClassValue<ConcurrentMap<Method, Dispatch>>() {
+			protected ConcurrentMap<Method, Dispatch> computeValue(Class c) {
+				return new ConcurrentHashMap<Method, Dispatch>();
+			}
+		};
+	
+	private static final Object[] NO_ARGS = new Object[0];
 	
 	/**
-	 * Tries to invoke the method <code>targetMethod</code> on the object 
-	 * <code>target</code>
-	 * @param target The invokation target
-	 * @param target Method The requested method
-	 * @param args Method parameters (if needed)
-	 * @return The result of the method invokation (if the method return type 
-	 * is not void),
-	 * <code>null</code> otherwise.
-	 * @throws ModelRuntimeException If <code>targetMethod</code> is not 
-	 * found in the target object class. 
+	 * How a model {@link Method} is dispatched by the proxy: resolved the 
+	 * first time the method is invoked for an implementation class, with 
+	 * the field name, the {@link Connection} and, for the other methods, a
+	 * {@link MethodHandle} to the implementation.
 	 */
-	private Object execMethod(Object target, Method targetMethod, 
-	Object[] args) {		
-	
-		boolean found = false;
-		
-		Method[] all = target.getClass().getMethods();
-		Method foundMethod = null;
+	private static final class Dispatch {
+		
+		enum Kind { GETTER, CONNECTION, CONNECTION_ARRAY, SETTER, METHOD }
+		
+		final Kind kind;
+		final String field;
+		final Class returnType;
+		final Connection connection;
+		
+		/* The field slot in the layout of the declaring model */
+		final ModelLayout layout;
+		final int slot;
+		
+		/* (Object target, Object[] args)Object, null if not found */
+		final MethodHandle handle;
+		final String missing;
+		
+		private Dispatch(Method method, Kind kind, String field, 
+		Class returnType, Connection connection, MethodHandle handle, 
+		String missing) {
+			this.kind = kind;
+			this.field = field;
+			this.returnType = returnType;
+			this.connection = connection;
+			this.handle = handle;
+			this.missing = missing;
+			
+			Class model = method.getDeclaringClass();
+			
+			this.layout = field != null && Model.class.isAssignableFrom(model) 
+				&& !model.equals(Model.class) ? ModelLayout.of(model) : null;
+			this.slot = layout == null ? -1 : layout.slot(field);
+		}
 		
-		for (Method m : all)
+		static Dispatch resolve(Class target, Method method) {
+			
+			Dispatch d = classify(target, method);
+			Dispatch prev = DISPATCH.get(target).putIfAbsent(method, d);
+			
+			return prev == null ? d : prev;
+		}
 		
-			//checks the name and the return type of the two methods
-			if(m.getName().equals(targetMethod.getName()) && 
-			   m.getReturnType().equals(targetMethod.getReturnType())) {
-				
-				found = true;
-				
-				//checks the parameters (overloading)
-				Class[] mP = m.getParameterTypes();
-				Class[] tP = targetMethod.getParameterTypes();
+		private static Dispatch classify(Class target, Method method) {
+			
+			String field = null;
+			Class rT = method.getReturnType();
+			
+			/* Business method logic: this should implement it */
+			if (!method.isAnnotationPresent(BusinessLogic.class)) {
 				
-				if (mP.length == tP.length) {
-					//every parameter type
-					for (int i = 0; i < mP.length; i++) 
-						if (!mP[i].equals(tP[i])) found = false;
+				if (CommonStatic.isAGetter(method)) {
+					field = CommonStatic.fieldName(method);
+					Connection c = method.getAnnotation(Connection.class);
+					
+					if (c == null) 
+						return new Dispatch(method, Kind.GETTER, field, rT, null, 
+						null, null);
+					
+					if (rT.isArray()) 
+						return new Dispatch(method, Kind.CONNECTION_ARRAY, field, 
+						rT.getComponentType(), c, null, null);
+						
+					return new Dispatch(method, Kind.CONNECTION, field, rT, c, 
+					null, null);
+				}
 				
-				} else found = false;
-				if (found) { foundMethod = m; break; }
+				if (CommonStatic.isASetter(method) &&
+					!method.isAnnotationPresent(Connection.class))
+					
+					return new Dispatch(method, Kind.SETTER, 
+					CommonStatic.fieldName(method), null, null, null, null);
 			}
 			
-		if (!found) 
-			throw new ModelRuntimeException("Method " + targetMethod.getName() 
-			+ " not found in target " + target.getClass());
-			
-		Object callResult = null;
-		
-		try { callResult = foundMethod.invoke(target, args);
+			return new Dispatch(method, Kind.METHOD, null, rT, null, 
+			handle(target, method), "Method " + method.getName() + 
+			" not found in target " + target);
+		}
 		
-		} catch (Exception e) { 
-			e.printStackTrace();
+		/* The implementation of method in target, null if there's not */
+		private static MethodHandle handle(Class target, Method method) {
+			
+			Method found;
+			
+			try { found = target.getMethod(method.getName(), 
+					method.getParameterTypes());
+			} catch (NoSuchMethodException e) { return null; }
+			
+			if (!found.getReturnType().equals(method.getReturnType())) 
+				return null;
+			
+			try { found.setAccessible(true); 
+			} catch (RuntimeException e) { /* public lookup only */ }
+			
+			try { 
+				return MethodHandles.lookup().unreflect(found).
+					asSpreader(Object[].class, found.getParameterCount()).
+					asType(MethodType.methodType(Object.class, Object.class, 
+					Object[].class));
+					
+			} catch (IllegalAccessException e) { return null; }
 		}
 		
-		return callResult;
+		Object invoke(Object target, Object[] args) throws Throwable {
+			if (handle == null) throw new ModelRuntimeException(missing);
+			
+			Object[] a = args == null ? NO_ARGS : args;
+			return (Object) handle.invokeExact(target, a);
+		}
 	}
 	
 	/**
@@ -0,0 +1,119 @@
+// 
+//  ModelScanner
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import modelmapper.exception.*;
+
+import java.util.*;
+import java.io.*;
+import java.net.*;
+
+/**
+ * Finds the {@link Model} interfaces of a package (and of its 
+ * subpackages), in the directories and in the jars of the class path.
+ * It's used by <code>ModelFactory.warmUpPackages</code>.
+ * <p>The classes are loaded without being initialized; the ones that 
+ * can't be loaded are skipped.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public final class ModelScanner {
+	
+	private ModelScanner() { }
+	
+	/**
+	 * Returns the model interfaces of the given packages.
+	 * @param loader The class loader of the models.
+	 * @param packages The package names (e.g. <code>com.example.model</code>).
+	 * @throws ModelRuntimeException If the class path can't be read.
+	 */
+	public static List<Class<? extends Model>> scan(ClassLoader loader, 
+	String... packages) {
+		
+		Set<String> names = new TreeSet<String>();
+		
+		for (String p : packages) {
+			String path = p.replace('.', '/');
+			
+			try {
+				Enumeration<URL> urls = loader.getResources(path);
+				
+				while (urls.hasMoreElements()) {
+					URL url = urls.nextElement();
+					
+					if ("jar".equals(url.getProtocol())) 
+						scanJar(url, path, names);
+					
+					else if ("file".equals(url.getProtocol())) 
+						scanDirectory(new File(url.toURI()), p, names);
+				}
+				
+			} catch (Exception e) { 
+				throw new ModelRuntimeException(e.getMessage()); 
+			}
+		}
+		
+		List<Class<? extends Model>> back = 
+			new ArrayList<Class<? extends Model>>();
+		
+		for (String n : names) {
+			Class c;
+			
+			try { c = Class.forName(n, false, loader); 
+			} catch (Throwable t) { continue; }
+			
+			if (c.isInterface() && c != Model.class && 
+				Model.class.isAssignableFrom(c)) back.add(c);
+		}
+		
+		return back;
+	}
+	
+	/* The classes under a directory of the class path */
+	private static void scanDirectory(File dir, String pkg, 
+	Set<String> names) {
+		
+		File[] files = dir.listFiles();
+		if (files == null) return;
+		
+		for (File f : files) {
+			String n = pkg.length() == 0 ? f.getName() : pkg + "." + f.getName();
+			
+			if (f.isDirectory()) scanDirectory(f, n, names);
+			else if (isClass(n)) names.add(n.substring(0, n.length() - 6));
+		}
+	}
+	
+	/* The classes under a path of a jar */
+	private static void scanJar(URL url, String path, Set<String> names) 
+	throws IOException {
+		
+		JarURLConnection c = (JarURLConnection) url.openConnection();
+		c.setUseCaches(false);
+		
+		java.util.jar.JarFile jar = c.getJarFile();
+		
+		try {
+			Enumeration<java.util.jar.JarEntry> entries = jar.entries();
+			
+			while (entries.hasMoreElements()) {
+				String n = entries.nextElement().getName();
+				
+				if (n.startsWith(path.length() == 0 ? "" : path + "/") && 
+					isClass(n)) 
+					names.add(n.substring(0, n.length() - 6).replace('/', '.'));
+			}
+			
+		} finally { jar.close(); }
+	}
+	
+	/* Top level and nested classes, not module or package infos */
+	private static boolean isClass(String name) {
+		return name.endsWith(".class") && name.indexOf('-') < 0;
+	}
+}
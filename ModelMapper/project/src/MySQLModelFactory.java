@@ -21,19 +21,57 @@ public class MySQLModelFactory extends RDBMSModelFactory {
 	
 	
 	public MySQLModelFactory(String uri, String user, String password) {
+		this(uri, user, password, ConnectionPool.DEFAULT_MIN_SIZE, 
+			 ConnectionPool.DEFAULT_MAX_SIZE);
+	}
+	
+	/**
+	 * Creates a factory backed by a pool of at least <code>minPool</code>
+	 * and at most <code>maxPool</code> connections.
+	 */
+	public MySQLModelFactory(String uri, String user, String password,
+	int minPool, int maxPool) {
 		
 		try {
 			Class.forName("com.mysql.jdbc.Driver").newInstance();
-			connection = DriverManager.getConnection(uri, user, password);
-				
-			ResultSet rs = 
-				connection.getMetaData().getTables(null, null, null, null);
-			while (rs.next()) { dbTables.add(rs.getString("TABLE_NAME")); }
 			
 		//TOFIX: catch it better 			
 		} catch (Exception e) { 
 			throw new ModelRuntimeException("MySQL error: " + e.getMessage()); 
-		}	
+		}
+		
+		init(new ConnectionPool(uri, user, password, minPool, maxPool));
+	}
+	
+	/**
+	 * Creates a factory that uses an already configured pool.
+	 * @param pool The pool used to borrow the database connections.
+	 */
+	public MySQLModelFactory(ConnectionPool pool) { init(pool); }
+	
+	private void init(ConnectionPool pool) {
+		this.pool = pool;
+		
+		/* Connector/J streams the rows one by one with this fetch size; 
+		 * with useCursorFetch=true in the url a positive size can be set.
+		 * In a transaction cursorFetchSize is used: without useCursorFetch
+		 * the rows are all read by the query */
+		this.fetchSize = Integer.MIN_VALUE;
+		
+		java.sql.Connection connection = borrowConnection();
+		ResultSet rs = null;
+		
+		try {
+			rs = connection.getMetaData().getTables(null, null, null, null);
+			while (rs.next()) { dbTables.add(rs.getString("TABLE_NAME")); }
+			
+		} catch (SQLException e) { 
+			throw new ModelRuntimeException("MySQL error: " + e.getMessage()); 
+			
+		} finally {
+			close(rs, null);
+			releaseConnection(connection);
+		}
 	}
 	
 	/**
@@ -51,24 +89,24 @@ public class MySQLModelFactory extends RDBMSModelFactory {
 	 * on that row.
 	 * @param o the model that will be saved on the database.
 	 */
-	public void save(Model o) {
-	
-	}
-	
-	//TOFIX : Save - It doesn't works right now..
-	/**	
-	 * It updates an entry on the database by building an UPDATE statement.
-	 * @param o The database entry */
-	private String updateRecord(Model o) {
-		return null;
-	}
+	public void save(Model o) { saveAll(o); }
 	
-	//TOFIX : Save - It doesn't works right now..
 	/**
-	 * Insert a new record on the dabase.
-	 * @param o The new database entry */
-	private String insertNewRecord(Model o) {
-		return null;
+	 * Saves all the given models. New records are inserted with multi-row
+	 * <code>INSERT</code> statements of at most <code>batchSize</code> rows
+	 * per table, and the generated <code>AUTO_INCREMENT</code> keys are read
+	 * back in bulk. Dirty records are updated with JDBC batches.
+	 * The super table rows of inheriting models are written first.
+	 * @param models varargs array of models to save. Method returns 
+	 * immediately if length == 0.
+	 * @throws ModelRuntimeException
+	 */
+	public void saveAll(Model... models) {
+		
+		List<Model> valid = new ArrayList<Model>();
+		for (Model m : models) if (m.validate()) valid.add(m);
+		
+		saveModels(valid.toArray(new Model[valid.size()]));
 	}
 	
 	/**
@@ -77,7 +115,10 @@ public class MySQLModelFactory extends RDBMSModelFactory {
 	 * corresponding tables and 
 	 * the entities are removed from the instance cache. 
 	 * This method does attempt to group the DELETE statements on a 
-	 * per-type basis.
+	 * per-type basis, with a <code>DELETE ... WHERE id IN (...)</code> of at
+	 * most <code>deleteChunkSize</code> ids for each table. The rows that 
+	 * depend on the deleted ones (subclass rows and composition parts) are
+	 * removed by the <code>ON DELETE CASCADE</code> constraints.
 	 * Thus, this method scales very well for large numbers of entities 
 	 * grouped into types. 
 	 * However, the execution time increases linearly for each entity of 
@@ -86,7 +127,7 @@ public class MySQLModelFactory extends RDBMSModelFactory {
 	 * immediately if length == 0.
 	 * @throws ModelRuntimeException
 	 */
-	public void delete(Model... entries) { }
+	public void delete(Model... entries) { deleteModels(entries); }
 	
 	/**
 	 * Executes the specified SQL and extracts the given key field, 
@@ -113,11 +154,14 @@ public class MySQLModelFactory extends RDBMSModelFactory {
 	 * to the database represented by the provider instance.  This Connection
 	 * can be used to execute arbitrary JDBC operations against the database.
 	 *
-	 * @return	A new connection to the database or <code>null</code>
-	 *if the driver could not be loaded.
+	 * <p>The connection is borrowed from the pool and <code>close()</code>
+	 * gives it back. Inside a {@link Transaction} the transaction connection
+	 * is returned.</p>
+	 *
+	 * @return	A connection to the database.
 	 */
 	public java.sql.Connection getConnection() { 
-		return connection; 
+		return borrowConnection(); 
 	}
 	
 	public RDBMSSchemaGenerator getSchemaGenerator() { 
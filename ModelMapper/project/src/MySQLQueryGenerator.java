@@ -64,4 +64,183 @@ public class MySQLQueryGenerator implements RDBMSQueryGenerator {
 		
 		return query;
 	}
+	
+	/**
+	 * Generates an <code>INNER JOIN</code> or a <code>LEFT JOIN</code> for
+	 * a MySQL database.
+	 * @param table The joined table.
+	 * @param outer <code>true</code> for a <code>LEFT JOIN</code>.
+	 * @param condition The join condition.
+	 * @return The generated clause.
+	 */
+	public String generateJOIN(String table, boolean outer, String condition) {
+		return (outer ? " LEFT JOIN " : " INNER JOIN ") + table + " ON " + 
+			condition;
+	}
+	
+	/**
+	 * Generates a <code>SELECT</code> of the given columns for a MySQL 
+	 * database.
+	 * @param columns The selected columns (<code>table.field</code>).
+	 * @param from The tables to add in the search.
+	 * @param criteria The where statement.
+	 * @param orderBy The order criteria.
+	 * @param desc <code>true</code> for descending, <code>false</code> for
+	 * ascending.
+	 * @param limit A limit to the <code>SELECT</code> result set.
+	 * @return The generated SQL query.
+	 */
+	public String generatePROJECTION(
+		List<String> columns, Collection<String> from, String criteria, 
+		String orderBy, boolean desc, int limit) {
+		
+		StringBuilder query = new StringBuilder("SELECT ");
+		
+		boolean first = true;
+		for (String c : columns) {
+			query.append(first ? "" : ",").append(c);
+			first = false;
+		}
+		
+		query.append(fromWhere(from, criteria));
+		
+		if (orderBy != null) 
+			query.append(" ORDER BY ").append(orderBy).append(
+				desc ? " DESC " : " ASC ");
+		
+		if (limit > 0) query.append(" LIMIT  ").append(limit);
+		
+		return query.toString();
+	}
+	
+	/**
+	 * Generates a multi-row <code>INSERT</code> for a MySQL database.
+	 * @param table The table name.
+	 * @param columns The columns to insert.
+	 * @param rows The number of rows (groups of <code>?</code> parameters).
+	 * @return The generated SQL statement.
+	 */
+	public String generateINSERT(String table, List<String> columns, 
+		int rows) {
+		
+		StringBuilder query = new StringBuilder("INSERT INTO " + table + " (");
+		StringBuilder row = new StringBuilder("(");
+		
+		boolean first = true;
+		for (String c : columns) {
+			query.append(first ? "" : ",").append(c);
+			row.append(first ? "?" : ",?");
+			first = false;
+		}
+		
+		row.append(")");
+		query.append(") VALUES ");
+		
+		for (int i = 0; i < rows; i++) 
+			query.append(i == 0 ? "" : ",").append(row);
+		
+		return query.toString();
+	}
+	
+	/**
+	 * Generates an <code>UPDATE</code> of a single row for a MySQL database.
+	 * @param table The table name.
+	 * @param columns The columns to update.
+	 * @param idName The table id column, the last parameter.
+	 * @return The generated SQL statement.
+	 */
+	public String generateUPDATE(String table, List<String> columns, 
+		String idName) {
+		
+		String query = "UPDATE " + table + " SET ";
+		
+		boolean first = true;
+		for (String c : columns) {
+			query += first ? c + " = ?" : ", " + c + " = ?";
+			first = false;
+		}
+		
+		return query + " WHERE " + idName + " = ?";
+	}
+	
+	/**
+	 * Generates a <code>DELETE ... WHERE id IN (...)</code> for a MySQL 
+	 * database.
+	 * @param table The table name.
+	 * @param idName The table id column.
+	 * @param count The number of ids (<code>?</code> parameters).
+	 * @return The generated SQL statement.
+	 */
+	public String generateDELETE(String table, String idName, int count) {
+		
+		StringBuilder query = new StringBuilder("DELETE FROM " + table);
+		query.append(" WHERE ").append(idName).append(" IN (");
+		
+		for (int i = 0; i < count; i++) query.append(i == 0 ? "?" : ",?");
+		
+		return query.append(")").toString();
+	}
+	
+	/**
+	 * Generates a <code>SELECT</code> of a single aggregate value for a
+	 * MySQL database.
+	 * @param function The aggregate function.
+	 * @param column The aggregated column.
+	 * @param from The tables to add in the search.
+	 * @param criteria The where statement.
+	 * @return The generated SQL query.
+	 */
+	public String generateAGGREGATE(String function, String column, 
+		Collection<String> from, String criteria) {
+		
+		return "SELECT " + function + "(" + column + ")" + 
+			fromWhere(from, criteria);
+	}
+	
+	/**
+	 * Generates a <code>SELECT 1 ... LIMIT 1</code> for a MySQL database.
+	 * @param from The tables to add in the search.
+	 * @param criteria The where statement.
+	 * @return The generated SQL query.
+	 */
+	public String generateEXISTS(Collection<String> from, String criteria) {
+		return "SELECT 1" + fromWhere(from, criteria) + " LIMIT 1";
+	}
+	
+	/**
+	 * Generates the condition <code>(c1, c2) &gt; (?, ?)</code> of a
+	 * keyset pagination for a MySQL database.
+	 * @param columns The key columns, in order.
+	 * @param greater <code>true</code> for <code>&gt;</code>, 
+	 * <code>false</code> for <code>&lt;</code>.
+	 * @return The generated condition.
+	 */
+	public String generateSEEK(List<String> columns, boolean greater) {
+		
+		StringBuilder key = new StringBuilder();
+		StringBuilder params = new StringBuilder();
+		
+		for (String c : columns) {
+			key.append(key.length() == 0 ? "" : ", ").append(c);
+			params.append(params.length() == 0 ? "?" : ", ?");
+		}
+		
+		String op = greater ? " > " : " < ";
+		
+		if (columns.size() == 1) return key + op + params;
+		return "(" + key + ")" + op + "(" + params + ")";
+	}
+	
+	/* FROM t1,t2 WHERE criteria */
+	private static String fromWhere(Collection<String> from, String criteria) {
+		StringBuilder query = new StringBuilder(" FROM ");
+		
+		boolean first = true;
+		for (String table : from) {
+			query.append(first ? "" : ",").append(table);
+			first = false;
+		}
+		
+		return query.append(" WHERE ").append(criteria).toString();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+// 
+//  PageIterator
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import java.util.*;
+
+/**
+ * An {@link Iterator} over the pages of the results of a {@link Finder},
+ * read with keyset pagination (<code>Finder.pageAfter</code>): every page
+ * is a single query that seeks the key of the last result of the previous
+ * one, so scanning any number of rows costs the same for every page.
+ * <p>No connection is held between two pages. The key of the last page
+ * returned (<code>getKey()</code>) can be used to resume the iteration
+ * later, e.g. by another request.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public class PageIterator<T extends Model> implements Iterator<T[]> {
+
+	private Finder<T> finder;
+	private int size;
+
+	private Object[] key;
+	private T[] next;
+
+	private boolean done = false;
+
+	/**
+	 * @param finder The finder of the results.
+	 * @param size The page size.
+	 */
+	public PageIterator(Finder<T> finder, int size) {
+		this(finder, size, null);
+	}
+
+	/**
+	 * @param finder The finder of the results.
+	 * @param size The page size.
+	 * @param key The key to start after (see <code>Finder.keyOf</code>),
+	 * <code>null</code> to start from the first result.
+	 */
+	public PageIterator(Finder<T> finder, int size, Object[] key) {
+		if (size < 1) throw new IllegalArgumentException("Invalid size.");
+
+		this.finder = finder;
+		this.size = size;
+		this.key = key;
+	}
+
+	public boolean hasNext() {
+		if (next != null) return true;
+		if (done) return false;
+
+		next = finder.pageAfter(key, size);
+
+		/* a short page is the last one */
+		if (next.length < size) done = true;
+
+		if (next.length == 0) next = null;
+		return next != null;
+	}
+
+	public T[] next() {
+		if (!hasNext()) throw new NoSuchElementException();
+
+		T[] back = next;
+		next = null;
+
+		key = finder.keyOf(back[back.length - 1]);
+		return back;
+	}
+
+	/**
+	 * The key of the last result returned, <code>null</code> before the
+	 * first page.
+	 */
+	public Object[] getKey() { return key; }
+
+	public void remove() { throw new UnsupportedOperationException(); }
+}
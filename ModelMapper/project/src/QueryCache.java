@@ -0,0 +1,206 @@
+// 
+//  QueryCache
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import java.util.*;
+
+/**
+ * A cache of find results, indexed by the SQL of the query and its
+ * parameters. It's used by the finders marked with
+ * <code>Finder.cached(Duration)</code>.
+ * <p>Every entry holds copies of the rows read (as the {@link EntityCache}
+ * does, so every hit creates new instances) and the set of tables the
+ * query read. Writing or deleting a row of one of these tables through
+ * the factory invalidates the entry; changes made by other processes are
+ * seen only when the entries expire.</p>
+ * <p>It's thread safe.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public class QueryCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	private int maxEntries;
+
+	private LinkedHashMap<Key, Entry> entries;
+
+	/* table -> the entries that read it */
+	private Map<String, Set<Key>> byTable = new HashMap<String, Set<Key>>();
+
+	/* incremented by every invalidation */
+	private long generation = 0;
+
+	private long hits, misses;
+
+	public QueryCache() { this(DEFAULT_MAX_ENTRIES); }
+
+	/**
+	 * @param maxEntries The maximum number of cached results.
+	 */
+	public QueryCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+
+		/* access ordered map: the eldest entry is the least recently used */
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> e) {
+				if (size() <= QueryCache.this.maxEntries) return false;
+
+				unlink(e.getKey(), e.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached rows of a query.
+	 * @return The rows, <code>null</code> if the query isn't cached or
+	 * the entry is expired.
+	 */
+	protected synchronized List<EntityCache.Row> get(String sql,
+	Object[] params) {
+
+		Key k = new Key(sql, params);
+		Entry e = entries.get(k);
+
+		if (e != null && e.expires < System.currentTimeMillis()) {
+			remove(k);
+			e = null;
+		}
+
+		if (e == null) misses++; else hits++;
+		return e == null ? null : e.rows;
+	}
+
+	/**
+	 * The current generation of the cache: results read before an
+	 * invalidation must not be cached after it.
+	 */
+	protected synchronized long generation() { return generation; }
+
+	/**
+	 * Caches the rows of a query.
+	 * @param tables The tables read by the query (lowercase).
+	 * @param generation The generation of the cache when the query was
+	 * executed: if any table has been invalidated since, the rows are not
+	 * cached.
+	 * @param ttl The time to live of the entry, in milliseconds.
+	 */
+	protected synchronized void put(String sql, Object[] params,
+	Set<String> tables, List<EntityCache.Row> rows, long generation,
+	long ttl) {
+
+		if (generation != this.generation || maxEntries == 0 || ttl <= 0)
+			return;
+
+		Key k = new Key(sql, params);
+		remove(k);
+
+		Entry e = new Entry(tables, rows, System.currentTimeMillis() + ttl);
+
+		for (String t : tables) {
+			Set<Key> keys = byTable.get(t);
+
+			if (keys == null) {
+				keys = new HashSet<Key>();
+				byTable.put(t, keys);
+			}
+
+			keys.add(k);
+		}
+
+		entries.put(k, e);
+	}
+
+	/**
+	 * Invalidates the results of all the queries that read a table.
+	 * @param table The table name (case insensitive).
+	 */
+	public synchronized void invalidate(String table) {
+		generation++;
+
+		Set<Key> keys = byTable.remove(table.toLowerCase());
+		if (keys != null) for (Key k : keys) remove(k);
+	}
+
+	/** Invalidates all the results */
+	public synchronized void clear() {
+		generation++;
+
+		entries.clear();
+		byTable.clear();
+	}
+
+	public synchronized int size() { return entries.size(); }
+
+	public synchronized long getHits() { return hits; }
+
+	public synchronized long getMisses() { return misses; }
+
+	public synchronized void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+
+		while (entries.size() > maxEntries) {
+			Key eldest = entries.keySet().iterator().next();
+			remove(eldest);
+		}
+	}
+
+	private void remove(Key k) {
+		Entry e = entries.remove(k);
+		if (e != null) unlink(k, e);
+	}
+
+	/* Removes the entry from the index of its tables */
+	private void unlink(Key k, Entry e) {
+		for (String t : e.tables) {
+			Set<Key> keys = byTable.get(t);
+			if (keys == null) continue;
+
+			keys.remove(k);
+			if (keys.isEmpty()) byTable.remove(t);
+		}
+	}
+
+	private static class Entry {
+		final Set<String> tables;
+		final List<EntityCache.Row> rows;
+		final long expires;
+
+		Entry(Set<String> tables, List<EntityCache.Row> rows, long expires) {
+			this.tables = tables;
+			this.rows = Collections.unmodifiableList(rows);
+			this.expires = expires;
+		}
+	}
+
+	/* sql, parameters */
+	private static class Key {
+		final String sql;
+		final Object[] params;
+
+		Key(String sql, Object[] params) {
+			this.sql = sql;
+			this.params = params == null ? new Object[0] : params.clone();
+
+			for (int i = 0; i < this.params.length; i++)
+				this.params[i] = Session.key(this.params[i]);
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+
+			Key k = (Key) o;
+			return sql.equals(k.sql) && Arrays.equals(params, k.params);
+		}
+
+		public int hashCode() {
+			return 31 * sql.hashCode() + Arrays.hashCode(params);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+// 
+//  QueryPlan
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A compiled <code>SELECT</code> for a {@link Finder} shape: the model
+ * type, the criteria (with its <code>?</code> placeholders), the order,
+ * the limit and the included connections.
+ * Plans are cached by the {@link RDBMSModelFactory}, so running the same
+ * shape again only binds the parameters.
+ * <p>The column layout of the result set (the index of each
+ * <code>table.field</code> column) is read from the
+ * {@link ResultSetMetaData} the first time the plan is executed, and
+ * compiled into a {@link RowMapper} for every table read.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public class QueryPlan {
+
+	/** The model type retrieved */
+	public final Class type;
+
+	/** The final SQL */
+	public final String sql;
+
+	/** The tables read by the query (lowercase) */
+	public final Set<String> tables;
+
+	/** The included connections, <code>null</code> if there are none */
+	public final String[] includes;
+	public final modelmapper.annotation.Connection[] connections;
+
+	/** The selected fields, <code>null</code> if all the columns are read */
+	public final String[] fields;
+
+	/* table.field (lowercase) -> column index, lazily computed */
+	private volatile Map<String, Integer> columns;
+	
+	/* table -> the mapper of its columns */
+	private Map<String, RowMapper> mappers = 
+		new ConcurrentHashMap<String, RowMapper>();
+
+	protected QueryPlan(Class type, String sql, Set<String> tables,
+	String[] includes, modelmapper.annotation.Connection[] connections) {
+		this(type, sql, tables, includes, connections, null);
+	}
+
+	protected QueryPlan(Class type, String sql, Set<String> tables,
+	String[] includes, modelmapper.annotation.Connection[] connections,
+	String[] fields) {
+		this.type = type;
+		this.sql = sql;
+		this.tables = Collections.unmodifiableSet(tables);
+		this.includes = includes;
+		this.connections = connections;
+		this.fields = fields;
+	}
+
+	/**
+	 * Returns the index of the column <code>table.field</code>, reading
+	 * the layout from the result set metadata on the first call.
+	 * @return The column index, or <code>-1</code> if the result set doesn't
+	 * contain that column.
+	 */
+	protected int column(ResultSet rs, String table, String field)
+	throws SQLException {
+
+		Map<String, Integer> layout = columns;
+		if (layout == null) columns = layout = layout(rs.getMetaData());
+
+		Integer index = layout.get((table + "." + field).toLowerCase());
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the mapper of the columns of <code>table</code> into the 
+	 * slots of <code>layout</code>, compiling it on the first call.
+	 */
+	protected RowMapper mapper(ResultSet rs, String table, ModelLayout layout)
+	throws SQLException {
+
+		RowMapper back = mappers.get(table);
+
+		if (back == null) {
+			back = new RowMapper(this, rs, table, layout);
+			mappers.put(table, back);
+		}
+
+		return back;
+	}
+
+	private static Map<String, Integer> layout(ResultSetMetaData meta)
+	throws SQLException {
+
+		Map<String, Integer> layout = new HashMap<String, Integer>();
+
+		for (int i = meta.getColumnCount(); i > 0; i--) {
+			String label = meta.getTableName(i) + "." + meta.getColumnName(i);
+
+			/* the first occurrence wins, as in the lookup by label */
+			layout.put(label.toLowerCase(), i);
+		}
+
+		return layout;
+	}
+
+	public String toString() { return "QueryPlan#<" + sql + ">"; }
+}
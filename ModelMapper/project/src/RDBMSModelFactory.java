@@ -20,9 +20,53 @@ public abstract class RDBMSModelFactory extends ModelFactory {
 	/* Tables available in the database */
 	protected List<String> dbTables = new ArrayList<String>();
 	
-	protected Connection connection;
+	/* Connections are borrowed per operation from the pool */
+	protected ConnectionPool pool;
+	
+	/* The connection of the transaction running in the current thread */
+	private ThreadLocal<java.sql.Connection> transactionConnection = 
+		new ThreadLocal<java.sql.Connection>();
+	
+	/* The identity map open in the current thread */
+	private ThreadLocal<Session> session = new ThreadLocal<Session>();
 	
 	protected RDBMSSchema schema = new RDBMSSchema(this);
+	
+	/* Rows written by a single INSERT or JDBC batch */
+	protected int batchSize = 1000;
+	
+	/* Rows fetched per round trip by the iterators (0: driver default) */
+	protected int fetchSize = 0;
+	
+	/* Used instead of a streaming (negative) fetchSize in a transaction */
+	protected int cursorFetchSize = 1000;
+	
+	/* Ids removed by a single DELETE */
+	protected int deleteChunkSize = 500;
+	
+	/* Instances whose connection is fetched by a single query */
+	protected int fetchBatchSize = 100;
+	
+	/* Second-level cache of the Cacheable models, null if disabled */
+	protected EntityCache entityCache = new EntityCache();
+	
+	/* Results of the cached finders, null if disabled */
+	protected QueryCache queryCache = new QueryCache();
+	
+	/* Rows written by the transaction running in the current thread */
+	private ThreadLocal<List<Object[]>> pendingEvictions = 
+		new ThreadLocal<List<Object[]>>();
+	
+	/* Compiled find shapes, the least recently used evicted first */
+	private int planCacheSize = 1000;
+	
+	private LinkedHashMap<String, QueryPlan> plans = 
+		new LinkedHashMap<String, QueryPlan>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(
+				Map.Entry<String, QueryPlan> e) {
+				return size() > planCacheSize;
+			}
+		};
 		
 	/**
 	 * Crates a proxy for <code>type</code>, with the given class 
@@ -37,6 +81,33 @@ public abstract class RDBMSModelFactory extends ModelFactory {
 		
 		return creation;
 	}
+	
+	/**
+	 * Prepares a model for <code>warmUp</code>: validates it, initializes 
+	 * its schema and relationships, and compiles the queries of its most 
+	 * common finds (all the records, by id and the deferred LOBs).
+	 */
+	protected void prepare(Class type) {
+		super.prepare(type);
+		
+		boolean allSupers = 
+			entityCache != null && EntityCache.isCacheable(type);
+		
+		String id = getCache().tableName(type) + "." + 
+			getCache().getModelId(type);
+		
+		/* the shape of Finder.all() */
+		getPlan(type, "", id, false, 0, null, null, allSupers);
+		
+		/* the shape of findById */
+		getPlan(type, id + " = ?", null, false, 0, null, null, allSupers);
+		
+		ModelLayout layout = ModelLayout.of(type);
+		
+		for (int slot = 0; slot < layout.size(); slot++) 
+			if (layout.isDeferred(slot)) 
+				getLobPlan(type, layout.name(slot), null);
+	}
 		
 	/**
 	 * Executes the specified SQL and extracts the given key field, 
@@ -59,9 +130,9 @@ public abstract class RDBMSModelFactory extends ModelFactory {
 	 * Retrieves a JDBC {@link Connection} instance which corresponds
 	 * to the database represented by the provider instance.  This Connection
 	 * can be used to execute arbitrary JDBC operations against the database.
+	 * The connection is borrowed from the pool: closing it gives it back.
 	 *
-	 * @return	A new connection to the database or <code>null</code>
-	 *if the driver could not be loaded.
+	 * @return	A connection to the database.
 	 */
 	public abstract java.sql.Connection getConnection();
 	
@@ -80,6 +151,164 @@ public abstract class RDBMSModelFactory extends ModelFactory {
 
 	public RDBMSSchema getSchema() { return schema; }
 	
+	public ConnectionPool getConnectionPool() { return pool; }
+	
+	/**
+	 * Returns the second-level cache of the {@link Cacheable} models.
+	 * @return The cache, <code>null</code> if it's disabled.
+	 */
+	public EntityCache getEntityCache() { return entityCache; }
+	
+	/**
+	 * Sets the second-level cache, e.g. one shared by all the factories 
+	 * connected to the same database; <code>null</code> disables it.
+	 */
+	public void setEntityCache(EntityCache cache) { this.entityCache = cache; }
+	
+	/** @return The cache of the finders results, <code>null</code> if it's 
+	 * disabled */
+	public QueryCache getQueryCache() { return queryCache; }
+	
+	/**
+	 * Sets the cache of the finders results (it can be shared by the 
+	 * factories connected to the same database).
+	 * @param cache The cache, <code>null</code> to disable it.
+	 */
+	public void setQueryCache(QueryCache cache) { this.queryCache = cache; }
+	
+	/**
+	 * Sets how many rows are written by a single multi-row 
+	 * <code>INSERT</code> or JDBC batch in <code>saveAll</code>.
+	 */
+	public void setBatchSize(int size) {
+		if (size < 1) throw new IllegalArgumentException("Invalid size.");
+		this.batchSize = size;
+	}
+	
+	/**
+	 * Sets the JDBC fetch size used by <code>advancedIterator</code>, i.e.
+	 * how many rows are transferred per round trip while iterating.
+	 */
+	public void setFetchSize(int size) { this.fetchSize = size; }
+	
+	/**
+	 * Sets the fetch size used by <code>advancedIterator</code> inside a 
+	 * {@link Transaction} when the fetch size streams the rows 
+	 * (<code>Integer.MIN_VALUE</code> with MySQL). A streamed result set 
+	 * blocks its connection until it's read, and the connection of a 
+	 * transaction is shared by the lazy loads done while iterating.
+	 */
+	public void setCursorFetchSize(int size) { this.cursorFetchSize = size; }
+	
+	/**
+	 * Sets how many ids are removed by a single <code>DELETE</code> in
+	 * <code>delete</code>.
+	 */
+	public void setDeleteChunkSize(int size) {
+		if (size < 1) throw new IllegalArgumentException("Invalid size.");
+		this.deleteChunkSize = size;
+	}
+	
+	/**
+	 * Sets for how many instances a connection is fetched by a single 
+	 * query, when it's read from one of the results of a find.
+	 */
+	public void setFetchBatchSize(int size) {
+		if (size < 1) throw new IllegalArgumentException("Invalid size.");
+		this.fetchBatchSize = size;
+	}
+	
+	/**
+	 * Sets how many compiled find shapes ({@link QueryPlan}) are cached;
+	 * the least recently used are evicted first.
+	 */
+	public void setPlanCacheSize(int size) {
+		if (size < 1) throw new IllegalArgumentException("Invalid size.");
+		
+		synchronized (plans) { 
+			this.planCacheSize = size; 
+			
+			Iterator<String> i = plans.keySet().iterator();
+			while (plans.size() > size) { i.next(); i.remove(); }
+		}
+	}
+	
+	/**
+	 * Opens a {@link Session} (identity map) in the current thread. If a 
+	 * session is already open, the new one replaces it until it's closed.
+	 * @return The session, that must be closed after use.
+	 */
+	public Session openSession() {
+		Session s = new Session(this, session.get());
+		session.set(s);
+		
+		return s;
+	}
+	
+	/**
+	 * Returns the {@link Session} open in the current thread.
+	 * @return The session, <code>null</code> if there's none.
+	 */
+	public Session currentSession() { return session.get(); }
+	
+	/** Called by <code>Session.close()</code> */
+	protected void closeSession(Session s) {
+		if (session.get() != s) return;
+		
+		if (s.previous != null) session.set(s.previous);
+		else session.remove();
+	}
+	
+	/**
+	 * Borrows a connection for a single operation. If a {@link Transaction}
+	 * is running in the current thread its connection is returned instead,
+	 * so all the operations of the transaction share it.
+	 * @return A connection that must be given back with 
+	 * <code>releaseConnection</code>.
+	 */
+	protected java.sql.Connection borrowConnection() {
+		java.sql.Connection c = transactionConnection.get();
+		return c != null ? c : pool.borrow();
+	}
+	
+	/**
+	 * Gives back a connection obtained by <code>borrowConnection</code>.
+	 * The connection of the running transaction is left untouched.
+	 */
+	protected void releaseConnection(java.sql.Connection c) {
+		if (c == null || c == transactionConnection.get()) return;
+		pool.release(c);
+	}
+	
+	/** 
+	 * Binds (or unbinds, if <code>null</code>) the connection of the 
+	 * transaction running in the current thread.
+	 */
+	protected void bindTransaction(java.sql.Connection c) {
+		if (c != null) { 
+			pool.pin(c, true); 
+			transactionConnection.set(c); 
+			
+		} else {
+			c = transactionConnection.get();
+			transactionConnection.remove();
+			if (c != null) pool.pin(c, false);
+			
+			/* the rows written may have been cached again before the 
+			 * commit, by other threads */
+			List<Object[]> pending = pendingEvictions.get();
+			pendingEvictions.remove();
+			
+			if (pending != null) 
+				for (Object[] e : pending) evict((Class) e[0], e[1]);
+		}
+	}
+	
+	/** @return The connection of the current thread transaction, if any */
+	protected java.sql.Connection transactionConnection() {
+		return transactionConnection.get();
+	}
+	
 	/**
 	 * Convenience method to select all entities of the given type 
 	 * with the specified, parameterized criteria.
@@ -96,126 +325,170 @@ public abstract class RDBMSModelFactory extends ModelFactory {
 	public <T extends Model> T[] advancedFind(
 		Class<T> type, String criteria, String orderBy, boolean desc, 
 		int limit, String[] includedConnections, Object[] params) {
+		
+		T[] back = find(type, criteria, orderBy, desc, limit, 
+			includedConnections, params, 0);
+		
+		group(back);
+		return back;
+	}
+	
+	/**
+	 * The results are read from the {@link QueryCache}, if it's enabled, 
+	 * and the query isn't executed in a {@link Transaction}.
+	 * @see ModelFactory#cachedFind
+	 */
+	public <T extends Model> T[] cachedFind(
+		Class<T> type, String criteria, String orderBy, boolean desc, 
+		int limit, Object[] params, long ttl) {
+		
+		T[] back = find(type, criteria, orderBy, desc, limit, null, params, 
+			ttl);
+		
+		group(back);
+		return back;
+	}
+	
+	/* 
+	 * The results of a find (and their super instances) fetch their 
+	 * connections together, see fetchAll.
+	 */
+	private static void group(Model[] results) {
+		if (results.length < 2) return;
+		
+		List<ModelProxy> siblings = new ArrayList<ModelProxy>();
+		for (Model m : results) addSibling(m.modelImplementation(), siblings);
+		
+		for (ModelProxy m : siblings) m.siblings = siblings;
+	}
+	
+	private static void addSibling(ModelProxy m, List<ModelProxy> siblings) {
+		siblings.add(m);
+		
+		for (Model s : m.supers.values()) 
+			addSibling(s.modelImplementation(), siblings);
+	}
+	
+	private <T extends Model> T[] find(
+		Class<T> type, String criteria, String orderBy, boolean desc, 
+		int limit, String[] includedConnections, Object[] params, long ttl) {
 			
-		create(type);
-			
-		/* timing the query */
-		java.util.Date start = new java.util.Date();
+		/* by id: from the session or the second-level cache */
+		if (includedConnections == null && (session.get() != null || 
+			(entityCache != null && EntityCache.isCacheable(type))) && 
+			byId(type, criteria, params)) {
 			
-		/* In the case the user call a method include(...) on a Finder
-		 * the relationships have to be fetched  in a single query for avoid
-		 * the N + 1 query problem in a loop.
-		 * This section of code handle this problem by adding the right
-		 * JOIN statement, and later the packing will be different.
-		 */
-		modelmapper.annotation.Connection[] connections = null;
-		if (includedConnections != null && includedConnections.length > 0) {
+			T known = cachedById(type, params[0]);
 			
-			if (criteria.length() > 0) criteria += " and ";
-			/* creates the array */
-			connections = new
-				modelmapper.annotation.Connection[includedConnections.length];
-				
-			for (int i = 0; i < includedConnections.length; i++) {
-				connections[i] = 
-				CommonStatic.searchConnection(type, includedConnections[i]);
-				criteria += includeConnection(type, connections[i]);
-				
-				if (i != includedConnections.length-1) criteria += " and ";
-			}			
+			if (known != null) {
+				T[] one = (T[]) java.lang.reflect.Array.newInstance(type, 1);
+				one[0] = known;
+				return one;
+			}
 		}
 		
-		/* The upper section got no functionalities at the moment */
-				
-		/* select FROM */
-		Set<String> from = new HashSet<String>();
-		from.add(getCache().tableName(type).toLowerCase());
+		/* the cached rows have to be complete */
+		boolean allSupers = ttl > 0 || 
+			(entityCache != null && EntityCache.isCacheable(type));
 		
-		List<Class> supersInterfaces = CommonStatic.getAllSupers(type);
+		QueryPlan plan = getPlan(type, criteria, orderBy, desc, limit, 
+			includedConnections, null, allSupers);
 		
-		for (Class s : supersInterfaces)
-			from.add(getCache().tableName(s).toLowerCase());
+		return find(plan, type, params, ttl);
+	}
+	
+	/**
+	 * Selects only the columns of the given fields (and the ids), joining 
+	 * only the super tables that own them. The models are packed as 
+	 * partially loaded: the first time a field that hasn't been read is 
+	 * accessed, all the fields of the instance are loaded.
+	 * @see ModelFactory#advancedSelect
+	 */
+	public <T extends Model> T[] advancedSelect(Class<T> type, 
+	String[] fields, String criteria, String orderBy, boolean desc, 
+	int limit, Object[] params) {
 		
-		/* Search if the WHERE statement uses some other table
-		 * (condition like TABLE1.field = ?) */
-		for (String table : dbTables)
-			if (criteria.toLowerCase().indexOf(table.toLowerCase()+".")!= -1) 
-				from.add(table.toLowerCase());
-				
-		Set<Class> whatInterfaces = new HashSet<Class>();
-		whatInterfaces.add(type);
-		whatInterfaces.addAll(supersInterfaces);
-			
-		if (includedConnections != null) {	
-			for (String c : includedConnections)
-				whatInterfaces.add(
-				CommonStatic.getConnectionFieldType(type, c));
-		}
-		/* select WHAT */
-		List<String> what = new LinkedList<String>();
-		for (Class i : whatInterfaces) what.add(getCache().tableName(i));
+		if (fields == null || fields.length == 0) 
+			return advancedFind(type, criteria, orderBy, desc, limit, null, 
+				params);
 		
-		//TODO: Add to what the preload connections chosen
+		QueryPlan plan = 
+			getPlan(type, criteria, orderBy, desc, limit, null, fields);
 		
-		String gCriteria = "";
+		T[] back = find(plan, type, params, 0);
 		
-		/* Inheritance implicit join case - The find must retrieve all the data
-		 * of the instance superclasses, and for relating the superinstances to
-		 * this, a JOIN through these tables is necessary.
-		 * User don't know how inheritance is implemented. */
-		if (getCache().extendsModels(type)) {
-			List<Class> supers = getCache().getSupers(type);
-			
-			for (Class s : supers) 
-				gCriteria += 
-					/* super criteria adding */
-					getCache().tableName(s) + "." + getCache().getModelId(s) + 
-					" = " + getCache().tableName(type) + "." + 
-					getCache().tableName(s) + getCache().getModelId(s) + 
-					" and "; 
-								
-		}
+		group(back);
+		return back;
+	}
+	
+	/* Executes a plan (or reads its results from the query cache) */
+	private <T extends Model> T[] find(QueryPlan plan, Class<T> type, 
+	Object[] params, long ttl) {
 		
-		/* Adds the user criteria */
-		if (criteria != null && criteria.length() > 1) gCriteria += criteria;
-		else gCriteria += " true ";
-				
-		String query = getQueryGenerator().generateSELECT(what, from, 
-					   gCriteria, orderBy, desc, limit); 
+		/* timing the query */
+		java.util.Date start = new java.util.Date();
 		
-		System.out.println("Find#<SQL: " + query.toLowerCase());
+		/* the transaction may read rows written but not committed yet */
+		QueryCache qc = ttl > 0 && plan.includes == null && 
+			plan.fields == null && transactionConnection() == null ? 
+			queryCache : null;
 		
-		ResultSet rs;
+		long generation = 0;
 		
-		try { /* Packing object */
-			PreparedStatement statement = connection.prepareStatement(query);
-
-			for (int i = 0; i < params.length; i++) 
-				statement.setObject(i+1, params[i]);		
-					
-	 		rs = statement.executeQuery();
-	
-		} catch (SQLException e) { 
-			throw new ModelRuntimeException(e.getMessage()); 
+		if (qc != null) {
+			List<EntityCache.Row> rows = qc.get(plan.sql, params);
+			
+			if (rows != null) {
+				Session session = this.session.get();
+				
+				T[] back = (T[]) 
+					java.lang.reflect.Array.newInstance(type, rows.size());
+				
+				for (int i = 0; i < back.length; i++) 
+					back[i] = (T) materialize(type, rows.get(i), session);
+				
+				return back;
+			}
+			
+			generation = qc.generation();
 		}
 		
+		System.out.println("Find#<SQL: " + plan.sql.toLowerCase());
 		
 		/* Packing the objects */
 		List<Model> back = new ArrayList<Model>();
 		
-		try {
+		java.sql.Connection connection = borrowConnection();
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		
+		/* rows read before a concurrent write are not cached */
+		long cached = entityCache != null ? entityCache.generation() : 0;
+		
+		try { 
+			statement = connection.prepareStatement(plan.sql);
+
+			for (int i = 0; i < params.length; i++) 
+				statement.setObject(i+1, params[i]);		
+					
+	 		rs = statement.executeQuery();
 			
-			if (connections == null) 
-				while(rs.next()) back.add(pack(type, rs));
+			if (plan.connections == null) 
+				while(rs.next()) back.add(pack(plan, type, rs, cached));
 				
-			else packCompound(back, type, rs, includedConnections, connections);
-			
+			else packCompound(back, plan, type, rs, cached);
 				
 		} catch (SQLException e) { 
 			throw new ModelRuntimeException(e.getMessage()); 
+			
+		} finally {
+			close(rs, statement);
+			releaseConnection(connection);
 		}
 		
 		//TODO: Pack and add the connections.
+		
+		if (qc != null) cacheResults(qc, plan, params, back, generation, ttl);
 
 		/* timing the query */
 		double ms = (new java.util.Date()).getTime()-start.getTime();
@@ -226,132 +499,1303 @@ public abstract class RDBMSModelFactory extends ModelFactory {
 			java.lang.reflect.Array.newInstance(type, back.size()));	
 	}
 	
-	/**
-	 * Packs an result set row into an object.
-	 * If the given model type extends other models, all the data of the 
-	 * superclasses
-	 * are recursively packed into the object.
-	 * @param type The class type.
-	 * @param rs The result set line.
-	 * @return A valid instance of the model <code>T</code>
-	 */
-	private <T extends Model> T pack(Class<T> type, ResultSet rs) {
-				
-		ModelProxy instance = getCache().createInstance(type);
+	/* Copies the rows read into the query cache */
+	private void cacheResults(QueryCache qc, QueryPlan plan, Object[] params,
+	List<Model> results, long generation, long ttl) {
 		
-		try {
-			Set<String> fields = getCache().getFieldsTypes(type).keySet();
-			String tN = getCache().tableName(type);
+		List<EntityCache.Row> rows = new ArrayList<EntityCache.Row>();
+		
+		for (Model m : results) {
+			ModelProxy impl = m.modelImplementation();
 			
-			for (String f : fields) 
-				if(!CommonStatic.isAModelType(type)) 
-					instance.fields.put(f,rs.getObject(tN + "." + f));
-				
-			instance.newRecord = instance.dirty = false;
-				
-			for (Class s : getCache().getSupers(type)) {
-				Model y = pack(s, rs);
-				instance.supers.put(s, y);	
-			}
-						
-		} catch (SQLException e) { 
+			/* instances of the session changed but not saved yet */
+			if (impl.dirty || impl.partial) return;
 			
-			e.printStackTrace();
+			rows.add(new EntityCache.Row(impl, 0));
 		}
 		
-		return create(type, instance);
+		qc.put(plan.sql, params, plan.tables, rows, generation, ttl);
 	}
 	
-	/** 
-	 * This method is responsable of fetching the requested model after a 
-	 * <code>get</code> invokation by <code>invokedBy</code>.
-	 * It makes navigation through references possible.
-	 * @param toFetch The model interfaces of the instances to fetch from the 
-	 * database.
-	 * @param invokedBy The model instance that invoked this method.
-	 * @param conn The {@link modelmapper.annotations.Connection} related.
-	 * @return A {@link Model} array with all the fetched instances.
+	/**
+	 * Executes a find and returns a forward-only iterator over its results. 
+	 * The statement is executed with a <code>TYPE_FORWARD_ONLY</code> 
+	 * cursor and the configured fetch size, and every row is packed only 
+	 * when the iterator reaches it.
+	 * The connection is held until the iterator is exhausted or closed.
+	 * <p>Inside a {@link Transaction} the iterator reads from the connection
+	 * of the transaction, so a streaming fetch size is replaced by 
+	 * <code>cursorFetchSize</code>: the lazy loads of the iterated 
+	 * instances run on the same connection.</p>
+	 * @see ModelFactory#advancedIterator
 	 */
-	protected Model[] fetch(Class toFetch, Model invokedBy, 
-	modelmapper.annotation.Connection conn) {
-		
-		Relationship r = getSchema().getNamedRelationship(conn.name());
+	public <T extends Model> ModelIterator<T> advancedIterator(
+		Class<T> type, String criteria, String orderBy, boolean desc, 
+		int limit, Object[] params) {
 		
-		String idA = getCache().getModelId(r.classA);
-		String idB = getCache().getModelId(r.classB);
-				
-		/* Case BelongsTo */
-		if (conn.type().equals(
-			modelmapper.annotation.ConnectionType.BelongsTo)) {
+		QueryPlan plan = getPlan(type, criteria, orderBy, desc, limit, null);
 		
-			String condition = 
-				r.tableB + "." + r.fieldB + " = " + r.tableA + "." + idA + 
-				" and " + r.tableB + "." + idB + " = ?"; 
-			
-			return find(toFetch, condition, invokedBy.fields().get(idB));
+		java.sql.Connection connection = borrowConnection();
+		PreparedStatement statement = null;
 		
-		/* Case Composition/Aggregation */
-		} else if (!conn.type().equals(
-					modelmapper.annotation.ConnectionType.ManyToMany)) {
+		try {
+			statement = connection.prepareStatement(plan.sql, 
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			
-			String condition = 
-				r.tableB + "." + r.fieldB + " = " + r.tableA + "." + idA + 
-				" and " + r.tableA + "." + idA + " = ?";
+			statement.setFetchSize(fetchSize < 0 && 
+				transactionConnection() != null ? cursorFetchSize : fetchSize);
 			
-			return find(toFetch, condition, invokedBy.fields().get(idA));
-		
-		
-		} else { /* Many to Many */
+			for (int i = 0; i < params.length; i++) 
+				statement.setObject(i+1, params[i]);
 			
-			String idParam = 
-				getCache().getModelId(invokedBy.modelInterface());
+			long cached = entityCache != null ? entityCache.generation() : 0;
+				
+			return new ResultSetIterator<T>(plan, type, connection, 
+				statement, statement.executeQuery(), cached);
 			
-			String tableParam =
-				getCache().tableName(invokedBy.modelInterface());
+		} catch (SQLException e) {
+			close(null, statement);
+			releaseConnection(connection);
 			
-			String condition = 
-			r.tableA + "." + idA + " = " + r.name + "." + r.fieldB + " and " + 
-			r.tableB + "." + idB + " = " + r.name + "." + r.fieldA + " and " + 
-			tableParam + "." + idParam + " = ? ";
-							
-			return find(toFetch, condition, invokedBy.fields().get(idParam));
+			throw new ModelRuntimeException(e.getMessage()); 
 		}
 	}
 	
-	/** 
-	 * It generates the JOIN condition for retrieve the given connection 
-	 * @param model The {@link Model} that own the connection
+	/**
+	 * Iterates a result set packing a row at a time.
+	 */
+	private class ResultSetIterator<T extends Model> 
+	implements ModelIterator<T> {
+		
+		private QueryPlan plan;
+		private Class<T> type;
+		
+		private java.sql.Connection connection;
+		private PreparedStatement statement;
+		private ResultSet rs;
+		
+		/* the generation of the entity cache before the query */
+		private long cached;
+		
+		private T next = null;
+		private boolean closed = false;
+		
+		ResultSetIterator(QueryPlan plan, Class<T> type, 
+		java.sql.Connection connection, PreparedStatement statement, 
+		ResultSet rs, long cached) {
+			this.plan = plan; this.type = type; 
+			this.connection = connection; 
+			this.statement = statement; this.rs = rs;
+			this.cached = cached;
+		}
+		
+		public boolean hasNext() {
+			if (next != null) return true;
+			if (closed) return false;
+			
+			try {
+				if (rs.next()) next = pack(plan, type, rs, cached);
+				else close();
+				
+			} catch (SQLException e) {
+				close();
+				throw new ModelRuntimeException(e.getMessage()); 
+			}
+			
+			return next != null;
+		}
+		
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			
+			T back = next;
+			next = null;
+			return back;
+		}
+		
+		public void remove() { throw new UnsupportedOperationException(); }
+		
+		public void close() {
+			if (closed) return;
+			closed = true;
+			
+			RDBMSModelFactory.close(rs, statement);
+			releaseConnection(connection);
+		}
+	}
+	
+	/**
+	 * The aggregate is computed by a single <code>SELECT</code> with the 
+	 * tables and the joins of the equivalent find.
+	 * @see ModelFactory#aggregate
+	 */
+	public Object aggregate(Class type, String function, String field, 
+	String criteria, Object[] params) {
+		
+		String f = function.toUpperCase();
+		
+		if (!AGGREGATES.contains(f) || (field == null && !f.equals("COUNT")))
+			throw new ModelRuntimeException("Invalid aggregate: " + 
+			function + "(" + field + ")");
+		
+		return queryValue(getAggregatePlan(type, f, field, criteria), params);
+	}
+	
+	/** 
+	 * Executes a <code>SELECT</code> limited to a single row, that reads 
+	 * no columns.
+	 * @see ModelFactory#exists 
+	 */
+	public boolean exists(Class type, String criteria, Object[] params) {
+		return 
+			queryValue(getAggregatePlan(type, null, null, criteria), params) 
+			!= null;
+	}
+	
+	/** @see ModelFactory#seekCriteria */
+	protected String seekCriteria(List<String> columns, boolean greater) {
+		return getQueryGenerator().generateSEEK(columns, greater);
+	}
+	
+	/**
+	 * Returns the compiled query of a deferred LOB, with the id of the 
+	 * record as parameter.
+	 * @param function The function applied to the column 
+	 * (e.g. <code>OCTET_LENGTH</code>), <code>null</code> to read it.
+	 */
+	protected QueryPlan getLobPlan(Class type, String field, 
+	String function) {
+		
+		String k = type.getName() + "\0lob\0" + field + "\0" + function;
+		QueryPlan plan = cachedPlan(k);
+		
+		if (plan == null) {
+			String tN = getCache().tableName(type);
+			
+			Set<String> from = new HashSet<String>();
+			from.add(tN.toLowerCase());
+			
+			String column = tN + "." + field;
+			String where = tN + "." + getCache().getModelId(type) + " = ?";
+			
+			String sql = function == null ? 
+				getQueryGenerator().generatePROJECTION(
+					Collections.singletonList(column), from, where, null, 
+					false, 0) :
+				getQueryGenerator().generateAGGREGATE(function, column, from, 
+					where);
+			
+			plan = new QueryPlan(type, sql, from, null, null);
+			
+			plan = cachePlan(k, plan);
+		}
+		
+		return plan;
+	}
+	
+	private static final Set<String> AGGREGATES = new HashSet<String>(
+		Arrays.asList("COUNT", "SUM", "AVG", "MIN", "MAX"));
+	
+	/* The first column of the first row, null if there are no rows */
+	private Object queryValue(QueryPlan plan, Object[] params) {
+		
+		java.sql.Connection connection = borrowConnection();
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		
+		try { 
+			statement = connection.prepareStatement(plan.sql);
+			
+			if (params != null)
+				for (int i = 0; i < params.length; i++) 
+					statement.setObject(i+1, params[i]);
+			
+			rs = statement.executeQuery();
+			return rs.next() ? rs.getObject(1) : null;
+			
+		} catch (SQLException e) { 
+			throw new ModelRuntimeException(e.getMessage()); 
+			
+		} finally {
+			close(rs, statement);
+			releaseConnection(connection);
+		}
+	}
+	
+	/**
+	 * Returns the compiled plan of an aggregate, or of an 
+	 * <code>exists</code> probe if <code>function</code> is 
+	 * <code>null</code>.
+	 * @see #getPlan
+	 */
+	protected QueryPlan getAggregatePlan(Class type, String function, 
+	String field, String criteria) {
+		
+		if (criteria == null) criteria = "";
+		
+		String k = type.getName() + "\0" + function + "\0" + field + "\0" + 
+			criteria;
+		
+		QueryPlan plan = cachedPlan(k);
+		
+		if (plan == null) {
+			
+			/* validates the model and initializes its schema */
+			create(type);
+			
+			Set<String> tables = new TreeSet<String>();
+			List<String> from = fromClause(type, null, null, criteria, tables);
+			String where = whereClause(criteria);
+			
+			String sql = function == null ? 
+				getQueryGenerator().generateEXISTS(from, where) :
+				getQueryGenerator().generateAGGREGATE(function, 
+				field == null ? "*" : column(type, field), from, where);
+			
+			plan = new QueryPlan(type, sql, tables, null, null);
+			
+			plan = cachePlan(k, plan);
+		}
+		
+		return plan;
+	}
+	
+	/* table.Field of a field of the model or of its superclasses */
+	private String column(Class type, String field) {
+		if (field.indexOf('.') != -1) return field;
+		
+		List<Class> types = new ArrayList<Class>();
+		types.add(type);
+		types.addAll(CommonStatic.getAllSupers(type));
+		
+		for (Class t : types) 
+			for (String f : ModelLayout.of(t).fieldsTypes().keySet())
+				if (f.equalsIgnoreCase(field)) 
+					return getCache().tableName(t) + "." + f;
+		
+		throw new ModelRuntimeException("Invalid field: " + field);
+	}
+	
+	/**
+	 * Returns the compiled {@link QueryPlan} for the given find shape, 
+	 * generating and caching it the first time the shape is seen.
+	 * The parameters of the find are not part of the shape.
+	 */
+	protected QueryPlan getPlan(Class type, String criteria, String orderBy, 
+	boolean desc, int limit, String[] includedConnections) {
+		return getPlan(type, criteria, orderBy, desc, limit, 
+			includedConnections, null);
+	}
+	
+	/**
+	 * Returns the compiled {@link QueryPlan} for the given find shape,
+	 * that selects only the given fields.
+	 * @see #getPlan
+	 */
+	protected QueryPlan getPlan(Class type, String criteria, String orderBy, 
+	boolean desc, int limit, String[] includedConnections, String[] fields) {
+		return getPlan(type, criteria, orderBy, desc, limit, 
+			includedConnections, fields, true);
+	}
+	
+	/**
+	 * Returns the compiled {@link QueryPlan} for the given find shape.
+	 * @param allSupers <code>false</code> to join only the super tables 
+	 * the criteria or the order refer to: the other super instances are 
+	 * loaded when one of their fields is accessed. It's ignored by the
+	 * projections, that always join only the tables they need.
+	 * @see #getPlan
+	 */
+	protected QueryPlan getPlan(Class type, String criteria, String orderBy, 
+	boolean desc, int limit, String[] includedConnections, String[] fields,
+	boolean allSupers) {
+		
+		/* with includes, the supers are always joined */
+		if (includedConnections != null && includedConnections.length > 0)
+			allSupers = true;
+		
+		StringBuilder key = new StringBuilder(type.getName());
+		key.append('\0').append(criteria).append('\0').append(orderBy);
+		key.append('\0').append(desc).append('\0').append(limit);
+		
+		if (!allSupers && fields == null) key.append("\0lazy");
+		
+		if (includedConnections != null) 
+			for (String c : includedConnections) key.append('\0').append(c);
+		
+		if (fields != null) {
+			key.append("\0select");
+			for (String f : fields) key.append('\0').append(f);
+		}
+		
+		String k = key.toString();
+		QueryPlan plan = cachedPlan(k);
+		
+		if (plan == null) {
+			plan = fields != null ? 
+				compileProjection(type, fields, criteria, orderBy, desc, limit) :
+				compilePlan(type, criteria, orderBy, desc, limit, 
+							includedConnections, allSupers);
+			
+			plan = cachePlan(k, plan);
+		}
+		
+		return plan;
+	}
+	
+	/* The cached plan of a shape, null if it's not compiled */
+	private QueryPlan cachedPlan(String key) {
+		synchronized (plans) { return plans.get(key); }
+	}
+	
+	/* 
+	 * Caches a compiled plan, unless another thread did it first: the 
+	 * cached one is returned.
+	 */
+	private QueryPlan cachePlan(String key, QueryPlan plan) {
+		synchronized (plans) {
+			QueryPlan other = plans.get(key);
+			if (other != null) return other;
+			
+			plans.put(key, plan);
+			return plan;
+		}
+	}
+	
+	/**
+	 * Generates the SQL for a find shape.
+	 * @see #getPlan
+	 */
+	private QueryPlan compilePlan(Class type, String criteria, String orderBy, 
+	boolean desc, int limit, String[] includedConnections, 
+	boolean allSupers) {
+		
+		/* validates the model and initializes its schema */
+		create(type);
+		
+		if (criteria == null) criteria = "";
+			
+		/* In the case the user call a method include(...) on a Finder
+		 * the relationships have to be fetched  in a single query for avoid
+		 * the N + 1 query problem in a loop.
+		 * This section of code handle this problem by adding the right
+		 * JOIN statement, and later the packing will be different.
+		 */
+		modelmapper.annotation.Connection[] connections = null;
+		if (includedConnections != null && includedConnections.length > 0) {
+			
+			/* creates the array */
+			connections = new
+				modelmapper.annotation.Connection[includedConnections.length];
+				
+			for (int i = 0; i < includedConnections.length; i++)
+				connections[i] = 
+				CommonStatic.searchConnection(type, includedConnections[i]);
+		}
+		
+		/* the super tables that are not used are left out */
+		Set<Class> joined = null;
+		
+		if (!allSupers) {
+			joined = new LinkedHashSet<Class>();
+			joinedTables(type, usedSupers(type, criteria, orderBy), joined);
+		}
+		
+		Set<String> tables = new TreeSet<String>();
+		List<String> from = fromClause(type, joined, includedConnections, 
+			criteria, tables);
+		
+		String gCriteria = whereClause(criteria);
+		
+		/* in a canonical order: the model, its supers, the includes */
+		Set<Class> whatInterfaces = new LinkedHashSet<Class>();
+		whatInterfaces.add(type);
+		
+		for (Class s : CommonStatic.getAllSupers(type))
+			if (joined == null || joined.contains(s)) whatInterfaces.add(s);
+			
+		if (includedConnections != null) {	
+			for (String c : includedConnections)
+				whatInterfaces.add(
+				CommonStatic.getConnectionFieldType(type, c));
+		}
+		/* select WHAT */
+		List<String> what = new LinkedList<String>();
+		for (Class i : whatInterfaces) what.add(getCache().tableName(i));
+		
+		/* the deferred LOBs are left out: the tables that have some are 
+		 * selected column by column */
+		List<String> columns = new ArrayList<String>();
+		boolean deferred = false;
+		
+		for (Class i : whatInterfaces) {
+			String tN = getCache().tableName(i);
+			ModelLayout layout = ModelLayout.of(i);
+			
+			if (!layout.hasDeferred()) { columns.add(tN + ".*"); continue; }
+			
+			deferred = true;
+			
+			for (Attribute a : schema.getAttributes(i)) {
+				int slot = layout.slot(a.name);
+				if (slot < 0 || !layout.isDeferred(slot)) 
+					columns.add(tN + "." + a.name);
+			}
+		}
+		
+		String query = deferred ? 
+			getQueryGenerator().generatePROJECTION(columns, from, gCriteria, 
+				orderBy, desc, limit) :
+			getQueryGenerator().generateSELECT(what, from, 
+				gCriteria, orderBy, desc, limit); 
+		
+		return new QueryPlan(type, query, tables, 
+			connections == null ? null : includedConnections, connections);
+	}
+	
+	/**
+	 * Generates the SQL for a find that selects only some fields.
+	 * @see #getPlan
+	 */
+	private QueryPlan compileProjection(Class type, String[] fields, 
+	String criteria, String orderBy, boolean desc, int limit) {
+		
+		/* validates the model and initializes its schema */
+		create(type);
+		
+		if (criteria == null) criteria = "";
+		
+		List<Class> types = new ArrayList<Class>();
+		types.add(type);
+		types.addAll(CommonStatic.getAllSupers(type));
+		
+		/* the selected fields, by the model that owns them */
+		Map<Class, Set<String>> owned = new HashMap<Class, Set<String>>();
+		
+		for (String f : fields) {
+			String name = null;
+			
+			for (Class t : types) {
+				name = fieldName(t, f);
+				
+				if (name != null) {
+					if (!owned.containsKey(t)) 
+						owned.put(t, new LinkedHashSet<String>());
+					
+					owned.get(t).add(name);
+					break;
+				}
+			}
+			
+			if (name == null) 
+				throw new ModelRuntimeException("Invalid field: " + f);
+		}
+		
+		/* the super tables used by the criteria or the order are joined */
+		for (Class t : usedSupers(type, criteria, orderBy)) 
+			if (!owned.containsKey(t)) 
+				owned.put(t, new LinkedHashSet<String>());
+		
+		Set<Class> joined = new LinkedHashSet<Class>();
+		joinedTables(type, owned.keySet(), joined);
+		joined.add(type);
+		
+		Set<String> columns = new LinkedHashSet<String>();
+		
+		for (Class t : joined) {
+			String tN = getCache().tableName(t);
+			
+			columns.add(tN + "." + getCache().getModelId(t));
+			
+			if (owned.containsKey(t)) 
+				for (String f : owned.get(t)) columns.add(tN + "." + f);
+			
+			/* the key of the super row, also if it's not joined */
+			for (Class s : getCache().getSupers(t)) 
+				columns.add(tN + "." + getCache().tableName(s) + 
+					getCache().getModelId(s));
+		}
+		
+		Set<String> tables = new TreeSet<String>();
+		List<String> from = fromClause(type, joined, null, criteria, tables);
+		
+		String query = getQueryGenerator().generatePROJECTION(
+			new ArrayList<String>(columns), from, whereClause(criteria), 
+			orderBy, desc, limit);
+		
+		return new QueryPlan(type, query, tables, null, null, fields);
+	}
+	
+	/* 
+	 * The supers the criteria or the order refer to, by table name or by
+	 * the name of one of their fields. The id too: the subclass table 
+	 * references the super row by another column (tableName + id).
+	 */
+	private Set<Class> usedSupers(Class type, String criteria, 
+	String orderBy) {
+		
+		String used = (criteria == null ? "" : criteria) + " " + 
+			(orderBy == null ? "" : orderBy);
+		
+		Set<Class> back = new LinkedHashSet<Class>();
+		
+		for (Class t : CommonStatic.getAllSupers(type)) {
+			
+			boolean uses = 
+				used.toLowerCase().indexOf(
+				getCache().tableName(t).toLowerCase() + ".") != -1;
+			
+			for (String f : ModelLayout.of(t).fieldsTypes().keySet())
+				if (java.util.regex.Pattern.compile("(?i)\\b" + f + "\\b")
+					.matcher(used).find()) uses = true;
+			
+			if (uses) back.add(t);
+		}
+		
+		return back;
+	}
+	
+	/* The field of the model (own, not inherited) with the given name */
+	private static String fieldName(Class type, String field) {
+		for (String f : ModelLayout.of(type).fieldsTypes().keySet())
+			if (f.equalsIgnoreCase(field)) return f;
+		
+		return null;
+	}
+	
+	/* The model and the supers on the way to the needed ones */
+	private boolean joinedTables(Class type, Set<Class> needed, 
+	Set<Class> joined) {
+		
+		boolean need = needed.contains(type);
+		
+		for (Class s : getCache().getSupers(type)) 
+			if (joinedTables(s, needed, joined)) need = true;
+		
+		if (need) joined.add(type);
+		return need;
+	}
+	
+	/**
+	 * Collects the tables read by a find of <code>type</code> and returns
+	 * its <code>FROM</code>: the table of the model joined with the super 
+	 * tables (<code>INNER JOIN</code> on the keys of the super rows) and 
+	 * with the tables of the included connections (<code>LEFT JOIN</code>),
+	 * followed by the other tables the criteria refers to.
+	 * The order only depends on the arguments, so the same find always 
+	 * generates the same SQL.
+	 * @param supers The super models to join, <code>null</code> for all.
+	 * @param includes The included connections, or <code>null</code>.
+	 * @param tables The set the (lowercase) table names are added to.
+	 */
+	private List<String> fromClause(Class type, Set<Class> supers, 
+	String[] includes, String criteria, Set<String> tables) {
+		
+		String tN = getCache().tableName(type).toLowerCase();
+		
+		StringBuilder join = new StringBuilder(tN);
+		tables.add(tN);
+		
+		/* Inheritance implicit join case - The find must retrieve all the data
+		 * of the instance superclasses, and for relating the superinstances to
+		 * this, a JOIN through these tables is necessary.
+		 * User don't know how inheritance is implemented. */
+		joinSupers(type, supers, join, tables);
+		
+		if (includes != null) 
+			for (String c : includes) includeConnection(type, c, join, tables);
+		
+		List<String> from = new ArrayList<String>();
+		from.add(join.toString());
+		
+		if (criteria == null) return from;
+		
+		/* Search if the WHERE statement uses some other table
+		 * (condition like TABLE1.field = ?), sorted by name */
+		Set<String> others = new TreeSet<String>();
+		
+		for (String table : dbTables)
+			if (criteria.toLowerCase().indexOf(table.toLowerCase()+".")!= -1 &&
+				!tables.contains(table.toLowerCase())) 
+				
+				others.add(table.toLowerCase());
+		
+		tables.addAll(others);
+		from.addAll(others);
+		
+		return from;
+	}
+	
+	/* Joins the super tables of the model, in getSupers order */
+	private void joinSupers(Class type, Set<Class> supers, StringBuilder join,
+	Set<String> tables) {
+		
+		String tN = getCache().tableName(type);
+		
+		for (Class s : getCache().getSupers(type)) {
+			if (supers != null && !supers.contains(s)) continue;
+			
+			String sN = getCache().tableName(s);
+			String sId = getCache().getModelId(s);
+			
+			/* a super shared by two branches is joined once */
+			if (!tables.add(sN.toLowerCase())) continue;
+			
+			join.append(getQueryGenerator().generateJOIN(sN.toLowerCase(), 
+				false, sN + "." + sId + " = " + tN + "." + sN + sId));
+			
+			joinSupers(s, supers, join, tables);
+		}
+	}
+	
+	/** The <code>WHERE</code> condition of the user criteria */
+	private static String whereClause(String criteria) {
+		return criteria != null && criteria.length() > 1 ? criteria : " true ";
+	}
+	
+	/** Quietly closes the given JDBC resources */
+	protected static void close(ResultSet rs, Statement statement) {
+		try { if (rs != null) rs.close(); } catch (SQLException e) { }
+		try { if (statement != null) statement.close(); 
+		} catch (SQLException e) { }
+	}
+	
+	/**
+	 * Packs an result set row into an object.
+	 * If the given model type extends other models, all the data of the 
+	 * superclasses
+	 * are recursively packed into the object.
+	 * @param plan The executed plan, that knows the columns layout.
+	 * @param type The class type.
+	 * @param rs The result set line.
+	 * @param cached The generation of the {@link EntityCache} before the 
+	 * query: the row isn't cached if an entry was evicted since.
+	 * @return A valid instance of the model <code>T</code>
+	 */
+	private <T extends Model> T pack(QueryPlan plan, Class<T> type, 
+	ResultSet rs, long cached) {
+		
+		Session session = this.session.get();
+		Object id = null;
+		
+		ModelProxy instance = null;
+		
+		try {
+			ModelLayout layout = ModelLayout.of(type);
+			String tN = getCache().tableName(type);
+			
+			/* the column and the getter of each slot */
+			RowMapper mapper = plan.mapper(rs, tN, layout);
+			
+			/* already packed in this session */
+			if (session != null) {
+				int slot = layout.slot(getCache().getModelId(type));
+				
+				if (slot >= 0 && mapper.column(slot) > 0) {
+					id = rs.getObject(mapper.column(slot));
+					
+					T known = session.get(type, id);
+					if (known != null) return known;
+				}
+			}
+			
+			instance = getCache().createInstance(type);
+			FieldMap values = instance.fields;
+			
+			/* the owners keys are loaded only if selected */
+			if (!CommonStatic.isAModelType(type)) {
+				mapper.read(rs, values);
+				
+				/* not all selected by a projection */
+				if (mapper.isPartial()) instance.partial = true;
+			}
+			
+			/* read by id when they are streamed */
+			if (layout.hasDeferred()) {
+				Object key = values.get(getCache().getModelId(type));
+				
+				for (int slot = 0; slot < layout.size(); slot++)
+					if (mapper.column(slot) <= 0 && layout.isDeferred(slot)) 
+						values.setValue(slot, DeferredLob.of(this, type, 
+							layout.name(slot), layout.type(slot), key));
+			}
+			
+			instance.newRecord = instance.dirty = false;
+				
+			for (Class s : getCache().getSupers(type)) {
+				Model y = 
+					plan.tables.contains(getCache().tableName(s).toLowerCase())?
+					pack(plan, s, rs, cached) : packKey(plan, type, s, rs);
+				
+				instance.supers.put(s, y);
+				
+				if (y.modelImplementation().partial) {
+					y.modelImplementation().derived = instance;
+					instance.partial = true;
+				}
+			}
+						
+		} catch (SQLException e) { 
+			
+			e.printStackTrace();
+			if (instance == null) instance = getCache().createInstance(type);
+			
+			/* half filled: neither in the session nor in the cache */
+			return create(type, instance);
+		}
+		
+		T back = create(type, instance);
+		if (session != null) session.put(type, id, back);
+		
+		/* rows read by a transaction may not be committed yet */
+		if (entityCache != null && EntityCache.isCacheable(type) && 
+			!instance.partial && transactionConnection() == null)
+			entityCache.put(getCache().tableName(type), 
+				instance.fields.get(getCache().getModelId(type)), instance,
+				cached);
+		
+		return back;
+	}
+	
+	/* 
+	 * The instance of a super table not joined by a projection: only its
+	 * id (the key column in the table of the subclass) is known.
+	 */
+	private Model packKey(QueryPlan plan, Class type, Class s, ResultSet rs) 
+	throws SQLException {
+		
+		String id = getCache().getModelId(s);
+		
+		int column = plan.column(rs, getCache().tableName(type), 
+			getCache().tableName(s) + id);
+		
+		Object key = column > 0 ? rs.getObject(column) : null;
+		
+		Session session = this.session.get();
+		
+		if (session != null) {
+			Model known = session.get(s, key);
+			if (known != null) return known;
+		}
+		
+		ModelProxy instance = getCache().createInstance(s);
+		instance.fields.put(id, key);
+		instance.newRecord = instance.dirty = false;
+		instance.partial = true;
+		
+		Model back = create(s, instance);
+		if (session != null) session.put(s, key, back);
+		
+		return back;
+	}
+	
+	/**
+	 * Reads the fields of a partially loaded instance (and of its supers)
+	 * with a find by id. The fields already loaded are not changed.
+	 * If the instance is a super instance of a partially loaded one, this
+	 * one is loaded instead. The partially loaded instances of the same
+	 * type read by the same find are loaded with it, by an 
+	 * <code>IN</code> query of at most <code>fetchBatchSize</code> ids.
+	 * @throws ModelRuntimeException If the record doesn't exist anymore.
+	 */
+	protected void loadFields(ModelProxy m) {
+		
+		/* the whole instance is loaded, from the subclass */
+		while (m.derived != null && m.derived.partial) m = m.derived;
+		
+		String id = getCache().getModelId(m.type);
+		
+		/* id -> the instances to load */
+		Map<Object, ModelProxy> batch = new LinkedHashMap<Object, ModelProxy>();
+		batch.put(Session.key(m.fields.get(id)), m);
+		
+		if (m.siblings != null) 
+			for (ModelProxy x : m.siblings) {
+				if (batch.size() >= fetchBatchSize) break;
+				
+				if (x.type == m.type && x.partial && x.fields.get(id) != null)
+					batch.put(Session.key(x.fields.get(id)), x);
+			}
+		
+		List<Object> ids = new ArrayList<Object>();
+		for (ModelProxy x : batch.values()) ids.add(x.fields.get(id));
+		
+		QueryPlan plan = getPlan(m.type, inCriteria(
+			getCache().tableName(m.type) + "." + id, ids.size()), null, false, 
+			0, null, null, true);
+		
+		/* new instances, not the ones of the session */
+		Session s = session.get();
+		session.remove();
+		
+		Model[] found;
+		
+		try { found = find(plan, m.type, inParams(ids), 0); } 
+		finally { if (s != null) session.set(s); }
+		
+		for (Model f : found) {
+			ModelProxy loaded = f.modelImplementation();
+			ModelProxy x = batch.get(Session.key(loaded.fields.get(id)));
+			
+			if (x != null && x.partial) complete(x, loaded);
+		}
+		
+		if (m.partial) 
+			throw new ModelRuntimeException("Record not found: " + 
+			getCache().tableName(m.type) + " " + m.fields.get(id));
+	}
+	
+	/* Copies the fields that are not loaded */
+	private static void complete(ModelProxy m, ModelProxy loaded) {
+		FieldMap f = m.fields;
+		
+		for (int slot = 0; slot < f.layout().size(); slot++)
+			if (!f.has(slot) && loaded.fields.has(slot)) 
+				f.setValue(slot, loaded.fields.getValue(slot));
+		
+		m.partial = false;
+		
+		for (Class s : loaded.supers.keySet()) {
+			Model mine = m.supers.get(s);
+			
+			if (mine == null) m.supers.put(s, loaded.supers.get(s));
+			else complete(mine.modelImplementation(), 
+				loaded.supers.get(s).modelImplementation());
+		}
+	}
+	
+	/**
+	 * Returns the instance of <code>type</code> with the given id from 
+	 * the {@link Session} or the {@link EntityCache}.
+	 * @return The instance, <code>null</code> if it's in neither.
+	 */
+	protected <T extends Model> T cachedById(Class<T> type, Object id) {
+		
+		Session session = this.session.get();
+		
+		if (session != null) {
+			T known = session.get(type, id);
+			if (known != null) return known;
+		}
+		
+		/* the transaction may have changed the row */
+		if (entityCache == null || !EntityCache.isCacheable(type) || 
+			transactionConnection() != null) 
+			return null;
+			
+		EntityCache.Row row = entityCache.get(getCache().tableName(type), id);
+		return row == null ? null : (T) materialize(type, row, session);
+	}
+	
+	/* A new instance from a cached row */
+	private Model materialize(Class type, EntityCache.Row row, 
+	Session session) {
+		
+		if (session != null) {
+			Model known = session.get(type, row.id);
+			if (known != null) return known;
+		}
+		
+		ModelProxy instance = getCache().createInstance(type);
+		row.copyTo(instance.fields);
+		instance.newRecord = instance.dirty = false;
+		
+		/* a value that couldn't be copied is read again */
+		if (row.isPartial()) instance.partial = true;
+		
+		/* the deferred values are not cached: new handles */
+		ModelLayout layout = ModelLayout.of(type);
+		
+		if (layout.hasDeferred())
+			for (int slot = 0; slot < layout.size(); slot++)
+				if (layout.isDeferred(slot) && !instance.fields.has(slot))
+					instance.fields.setValue(slot, DeferredLob.of(this, type, 
+						layout.name(slot), layout.type(slot), row.id));
+		
+		List<Class> sC = getCache().getSupers(type);
+		EntityCache.Row[] supers = row.supers();
+		
+		for (int i = 0; i < supers.length; i++) {
+			if (supers[i] == null) continue;
+			
+			Model s = materialize(sC.get(i), supers[i], session);
+			instance.supers.put(sC.get(i), s);
+			
+			if (s.modelImplementation().partial) {
+				s.modelImplementation().derived = instance;
+				instance.partial = true;
+			}
+		}
+		
+		Model back = create(type, instance);
+		if (session != null) session.put(type, row.id, back);
+		
+		return back;
+	}
+	
+	/**
+	 * Returns the instance of <code>type</code> with the given id, from
+	 * the current {@link Session}, the {@link EntityCache} (for the 
+	 * {@link Cacheable} models) or the database.
+	 * @return The instance, <code>null</code> if there's no such record.
+	 */
+	public <T extends Model> T findById(Class<T> type, Object id) {
+		if (id == null) return null;
+		
+		T back = cachedById(type, id);
+		if (back != null) return back;
+		
+		T[] found = advancedFind(type, getCache().tableName(type) + "." + 
+			getCache().getModelId(type) + " = ?", null, false, 0, null, 
+			new Object[] {id});
+			
+		return found.length == 0 ? null : found[0];
+	}
+	
+	/* Checks if the criteria is "id = ?" */
+	private boolean byId(Class type, String criteria, Object[] params) {
+		
+		if (criteria == null || params == null || params.length != 1) 
+			return false;
+		
+		String c = criteria.replaceAll("[\\s()]", "").toLowerCase();
+		String id = getCache().getModelId(type).toLowerCase();
+		
+		return c.equals(id + "=?") || 
+			c.equals(getCache().tableName(type).toLowerCase() + "." + id + "=?");
+	}
+	
+	/** 
+	 * This method is responsable of fetching the requested model after a 
+	 * <code>get</code> invokation by <code>invokedBy</code>.
+	 * It makes navigation through references possible.
+	 * @param toFetch The model interfaces of the instances to fetch from the 
+	 * database.
+	 * @param invokedBy The model instance that invoked this method.
+	 * @param conn The {@link modelmapper.annotations.Connection} related.
+	 * @return A {@link Model} array with all the fetched instances.
+	 */
+	protected Model[] fetch(Class toFetch, Model invokedBy, 
+	modelmapper.annotation.Connection conn) {
+		
+		Relationship r = getSchema().getNamedRelationship(conn.name());
+		
+		String idA = getCache().getModelId(r.classA);
+		String idB = getCache().getModelId(r.classB);
+				
+		/* Case BelongsTo */
+		if (conn.type().equals(
+			modelmapper.annotation.ConnectionType.BelongsTo)) {
+			
+			/* the key of the owner has been loaded with the row */
+			Map<String, Object> f = invokedBy.fields();
+			Object key = f.get(r.fieldB);
+			
+			if (f.containsKey(r.fieldB) && !(key instanceof Model)) {
+				Model owner = key == null ? null : findById(toFetch, key);
+				
+				Model[] back = (Model[]) java.lang.reflect.Array.newInstance(
+					toFetch, owner == null ? 0 : 1);
+				if (owner != null) back[0] = owner;
+				
+				return back;
+			}
+		
+			String condition = 
+				r.tableB + "." + r.fieldB + " = " + r.tableA + "." + idA + 
+				" and " + r.tableB + "." + idB + " = ?"; 
+			
+			return find(toFetch, condition, invokedBy.fields().get(idB));
+		
+		/* Case Composition/Aggregation */
+		} else if (!conn.type().equals(
+					modelmapper.annotation.ConnectionType.ManyToMany)) {
+			
+			String condition = 
+				r.tableB + "." + r.fieldB + " = " + r.tableA + "." + idA + 
+				" and " + r.tableA + "." + idA + " = ?";
+			
+			return find(toFetch, condition, invokedBy.fields().get(idA));
+		
+		
+		} else { /* Many to Many */
+			
+			String idParam = 
+				getCache().getModelId(invokedBy.modelInterface());
+			
+			String tableParam =
+				getCache().tableName(invokedBy.modelInterface());
+			
+			String condition = 
+			r.tableA + "." + idA + " = " + r.name + "." + r.fieldB + " and " + 
+			r.tableB + "." + idB + " = " + r.name + "." + r.fieldA + " and " + 
+			tableParam + "." + idParam + " = ? ";
+							
+			return find(toFetch, condition, invokedBy.fields().get(idParam));
+		}
+	}
+	
+	/**
+	 * Fetches the connection for <code>fetchBatchSize</code> instances at 
+	 * a time, with a query by an <code>IN</code> list of keys.
+	 * <p>The owners of a <code>BelongsTo</code> connection are found by 
+	 * their ids (the ones in the {@link Session} or in the 
+	 * {@link EntityCache} are not read again). The other connections are 
+	 * read by a find of the instances that includes the connection.</p>
+	 * @see ModelFactory#fetchAll
+	 */
+	protected void fetchAll(Class toFetch, String field, 
+	List<ModelProxy> invokedBy, modelmapper.annotation.Connection conn) {
+		
+		Relationship r = getSchema().getNamedRelationship(conn.name());
+		
+		boolean belongsTo = conn.type().equals(
+			modelmapper.annotation.ConnectionType.BelongsTo);
+		
+		for (int from = 0; from < invokedBy.size(); from += fetchBatchSize) {
+			List<ModelProxy> chunk = invokedBy.subList(from, 
+				Math.min(invokedBy.size(), from + fetchBatchSize));
+			
+			if (belongsTo && keysLoaded(chunk, r.fieldB)) 
+				fetchOwners(toFetch, field, chunk, r.fieldB);
+			
+			else fetchIncluded(field, chunk);
+		}
+	}
+	
+	/**
+	 * Fetches the connections concurrently, each one on the executor of 
+	 * the factory with its own pooled connection and in the 
+	 * {@link Session} of the calling thread (the first one is fetched by 
+	 * the calling thread). Inside a {@link Transaction} they are fetched 
+	 * one after the other, by the connection of the transaction.
+	 * <p>The partially loaded instances are completed by the calling 
+	 * thread before the fetches start: the fetches only read the fields of
+	 * the instances, and they never load them concurrently.</p>
+	 * @throws ModelRuntimeException The first exception thrown by a fetch.
 	 */
-	private String includeConnection(Class model, 
-	modelmapper.annotation.Connection conn) {
+	protected void fetchAll(final Class[] toFetch, final String[] fields, 
+	final List<ModelProxy> invokedBy, 
+	final modelmapper.annotation.Connection[] connections) {
+		
+		if (fields.length < 2 || transactionConnection() != null) {
+			super.fetchAll(toFetch, fields, invokedBy, connections);
+			return;
+		}
+		
+		/* fields() loads the siblings together, a batch at a time */
+		for (ModelProxy m : invokedBy) if (m.partial) m.fields();
+		
+		final Session s = session.get();
+		
+		List<java.util.concurrent.CompletableFuture<Void>> tasks = 
+			new ArrayList<java.util.concurrent.CompletableFuture<Void>>();
+		
+		for (int i = 1; i < fields.length; i++) {
+			final int f = i;
+			
+			tasks.add(java.util.concurrent.CompletableFuture.runAsync(
+				new Runnable() {
+					public void run() {
+						
+						/* the executor may also run it in this thread */
+						Session previous = session.get();
+						
+						if (s != null) session.set(s);
+						else session.remove();
+						
+						try { 
+							fetchAll(toFetch[f], fields[f], invokedBy, 
+								connections[f]); 
+								
+						} finally { 
+							if (previous != null) session.set(previous);
+							else session.remove();
+						}
+					}
+				}, getExecutor()));
+		}
+		
+		RuntimeException failure = null;
+		
+		try { fetchAll(toFetch[0], fields[0], invokedBy, connections[0]); } 
+		catch (RuntimeException e) { failure = e; }
+		
+		for (java.util.concurrent.CompletableFuture<Void> t : tasks) {
+			try { t.join(); } 
+			catch (java.util.concurrent.CompletionException e) {
+				if (failure != null) continue;
+				
+				failure = e.getCause() instanceof RuntimeException ? 
+					(RuntimeException) e.getCause() : 
+					new ModelRuntimeException(e.getCause().getMessage());
+			}
+		}
+		
+		if (failure != null) throw failure;
+	}
+	
+	/* Checks if the keys of the owners have been loaded with the rows */
+	private static boolean keysLoaded(List<ModelProxy> models, String key) {
+		for (ModelProxy m : models) {
+			Map<String, Object> f = m.fields();
+			if (!f.containsKey(key) || f.get(key) instanceof Model) return false;
+		}
+		
+		return true;
+	}
+	
+	/* BelongsTo: the owners by id */
+	private void fetchOwners(Class toFetch, String field, 
+	List<ModelProxy> models, String key) {
+		
+		String id = getCache().getModelId(toFetch);
+		
+		Map<Object, Model> owners = new HashMap<Object, Model>();
+		Map<Object, Object> keys = new LinkedHashMap<Object, Object>();
+		
+		for (ModelProxy m : models) {
+			Object k = m.fields().get(key);
+			if (k == null || owners.containsKey(Session.key(k))) continue;
+			
+			Model known = cachedById(toFetch, k);
+			
+			if (known != null) owners.put(Session.key(k), known);
+			else keys.put(Session.key(k), k);
+		}
+		
+		if (!keys.isEmpty()) {
+			Model[] found = find(toFetch, 
+				inCriteria(getCache().tableName(toFetch) + "." + id, 
+				keys.size()), null, false, 0, null, inParams(keys.values()), 0);
+			
+			/* the owners fetch their connections together too */
+			group(found);
+			
+			for (Model o : found) owners.put(Session.key(o.fields().get(id)), o);
+		}
+		
+		for (ModelProxy m : models) {
+			Object k = m.fields().get(key);
+			Model owner = k == null ? null : owners.get(Session.key(k));
+			
+			m.addModels(field, owner == null ? null : new Model[] {owner}, 
+				true);
+		}
+	}
+	
+	/* The instances again, including the connection */
+	private void fetchIncluded(String field, List<ModelProxy> models) {
+		
+		Class type = models.get(0).type;
+		String id = getCache().getModelId(type);
+		String column = getCache().tableName(type) + "." + id;
+		
+		List<Object> ids = new ArrayList<Object>();
+		for (ModelProxy m : models) ids.add(idValue(m.model));
+		
+		Model[] found = find(type, inCriteria(column, ids.size()), column, 
+			false, 0, new String[] {field}, inParams(ids), 0);
+		
+		Map<Object, ModelProxy> byId = new HashMap<Object, ModelProxy>();
+		
+		for (Model f : found) 
+			byId.put(Session.key(f.fields().get(id)), f.modelImplementation());
+		
+		for (ModelProxy m : models) {
+			ModelProxy f = byId.get(Session.key(idValue(m.model)));
+			
+			/* the same instance (from the session): already added */
+			if (f == m) continue;
+			
+			List<Model> fetched = f == null ? null : f.fetched.get(field);
+			
+			m.addModels(field, fetched == null ? null : 
+				fetched.toArray(new Model[fetched.size()]), true);
+		}
+	}
+	
+	/* 
+	 * column IN (?, ...), with the count rounded up to a power of two:
+	 * a few shapes (plans and prepared statements) for any batch size.
+	 * The parameters are padded by inParams.
+	 */
+	private static String inCriteria(String column, int count) {
+		StringBuilder c = new StringBuilder(column).append(" IN (");
+		
+		for (int i = 0; i < inSize(count); i++) c.append(i == 0 ? "?" : ", ?");
+		
+		return c.append(")").toString();
+	}
+	
+	/* The ids, padded repeating the last one to the size of inCriteria */
+	private static Object[] inParams(Collection<Object> ids) {
+		Object[] back = new Object[inSize(ids.size())];
+		
+		int i = 0;
+		for (Object id : ids) back[i++] = id;
+		
+		while (i < back.length) { back[i] = back[i - 1]; i++; }
+		
+		return back;
+	}
+	
+	private static int inSize(int count) {
+		int size = 1;
+		while (size < count) size <<= 1;
+		
+		return size;
+	}
+	
+	/** 
+	 * It joins the table of the given connection (through the table of the
+	 * relationship, for a <code>ManyToMany</code>) for retrieve it.
+	 * @param model The {@link Model} that own the connection
+	 * @param field The connection field.
+	 */
+	private void includeConnection(Class model, String field, 
+	StringBuilder join, Set<String> tables) {
 
-		//modelmapper.annotation.Connection conn = 
-		//	CommonStatic.getConnection(model, connectionName);
+		modelmapper.annotation.Connection conn = 
+			CommonStatic.searchConnection(model, field);
 			
 		Relationship r = getSchema().getNamedRelationship(conn.name());
 
-		String condition = " ";
 		String idA = getCache().getModelId(r.classA);
 		String idB = getCache().getModelId(r.classB);
+		
+		String target = getCache().tableName(
+			CommonStatic.getConnectionFieldType(model, field)).toLowerCase();
+		
+		if (tables.contains(target))
+			throw new ModelRuntimeException("Can't include " + field + 
+				": the table " + target + " is already read by the find.");
 
-		if (conn.type().equals(
-			modelmapper.annotation.ConnectionType.BelongsTo))
-
-			condition = 
-				r.tableB + "." + r.fieldB + " = " + r.tableA + "." + idA;
-
-		else if (!conn.type().equals(
-				  modelmapper.annotation.ConnectionType.ManyToMany))
-
-			condition = 
-				r.tableB + "." + r.fieldB + " = " + r.tableA + "." + idA;
-
-		else  
-			condition = 
-			r.tableA + "." + idA + " = " + r.name + "." + r.fieldB + " and " + 
-			r.tableB + "." + idB + " = " + r.name + "." + r.fieldA + " ";
+		if (!conn.type().equals(
+				  modelmapper.annotation.ConnectionType.ManyToMany)) {
 
-		return condition;
+			tables.add(target);
+			join.append(getQueryGenerator().generateJOIN(target, true, 
+				r.tableB + "." + r.fieldB + " = " + r.tableA + "." + idA));
+			
+			return;
+		}
+		
+		/* through the table of the relationship */
+		String conditionA = 
+			r.tableA + "." + idA + " = " + r.name + "." + r.fieldB;
+		String conditionB = 
+			r.tableB + "." + idB + " = " + r.name + "." + r.fieldA;
+		
+		boolean toB = target.equalsIgnoreCase(r.tableB);
+		
+		tables.add(r.name.toLowerCase());
+		tables.add(target);
+		
+		join.append(getQueryGenerator().generateJOIN(r.name.toLowerCase(), 
+			true, toB ? conditionA : conditionB));
+		join.append(getQueryGenerator().generateJOIN(target, true, 
+			toB ? conditionB : conditionA));
 	}
 
 	/**
@@ -359,36 +1803,490 @@ public abstract class RDBMSModelFactory extends ModelFactory {
 	 * In the case the user call a method include(...) on a Finder
 	 * the relationships have to be fetched in a single query for avoid
 	 * the N + 1 query problem in a loop.
-	 * This section of code handle this problem by adding the right
-	 * JOIN statement, and later the packing will be different.
+	 * Every row holds an instance and a model of each included connection:
+	 * the instances and the connected models are deduplicated by id, so 
+	 * the rows don't need to be ordered (and several connections can be 
+	 * included, even if their rows multiply each other).
 	 */
-	private void packCompound(List<Model> back, Class type, ResultSet rs, 
-	String[] fields, modelmapper.annotation.Connection[] conn) 
-	throws SQLException {
+	private void packCompound(List<Model> back, QueryPlan plan, Class type, 
+	ResultSet rs, long cached) throws SQLException {
 	
-		Model prev = null;
-		List<Model> list = new ArrayList<Model>();
+		String[] fields = plan.includes;
+		
+		Class[] types = new Class[fields.length];
+		String[] ids = new String[fields.length];
+		
+		for (int i = 0; i < fields.length; i++) {
+			types[i] = getCache().getConnectionFieldType(type, fields[i]);
+			ids[i] = getCache().getModelId(types[i]);
+		}
+		
+		String id = getCache().getModelId(type);
+		Map<Object, Model> instances = new HashMap<Object, Model>();
+		
+		/* for each connection: instance id -> connected models ids */
+		List<Map<Object, Set<Object>>> added = 
+			new ArrayList<Map<Object, Set<Object>>>();
+		
+		for (String f : fields) added.add(new HashMap<Object, Set<Object>>());
 		
 		while (rs.next()) {
 			
-			Model o = pack(type, rs);
-			if (!o.equalsId(prev)) { back.add(o); prev = o; }
+			Model o = pack(plan, type, rs, cached);
+			Object key = Session.key(o.fields().get(id));
+			
+			Model prev = instances.get(key);
+			
+			if (prev == null) { 
+				instances.put(key, prev = o);
+				back.add(o);
+				
+				/* an instance of the session may have them already */
+				for (String f : fields) {
+					o.modelImplementation().fetched.remove(f.toLowerCase());
+					o.modelImplementation().addModels(f, null, true);
+				}
+			}
 			
 			for (int i = 0; i < fields.length; i++) {
-				Relationship r = 
-					getSchema().getNamedRelationship(conn[i].name());
+				Model c = pack(plan, types[i], rs, cached);
+				Object cKey = Session.key(c.fields().get(ids[i]));
+				
+				/* no connected model in this row */
+				if (cKey == null) continue;
+				
+				Set<Object> s = added.get(i).get(key);
+				
+				if (s == null) {
+					s = new HashSet<Object>();
+					added.get(i).put(key, s);
+				}
+				
+				if (s.add(cKey)) 
+					prev.modelImplementation().addModels(fields[i], 
+					new Model[]{c}, true);
+			}
+		}
+		
+	}
+	
+	/* Marks a foreign key whose value has never been loaded nor set */
+	private static final Object UNKNOWN = new Object();
+	
+	/**
+	 * Writes the given models to the database, grouping them by table.
+	 * New records are written with multi-row <code>INSERT</code> statements
+	 * (reading back the generated keys), dirty records with batched 
+	 * <code>UPDATE</code> statements.
+	 * The rows of the super tables are written before the rows of the
+	 * inheriting models, so their keys are available as foreign keys.
+	 * If no {@link Transaction} is running, all the statements are executed 
+	 * in a single local transaction.
+	 * @param models The models to save.
+	 * @throws ModelRuntimeException If the database rejects a statement.
+	 */
+	protected void saveModels(Model... models) {
+		
+		/* Every instance to write, grouped by table. Super instances are 
+		 * collected before their subclasses. */
+		Map<Class, List<ModelProxy>> groups = 
+			new LinkedHashMap<Class, List<ModelProxy>>();
+			
+		Set<ModelProxy> seen = 
+			Collections.newSetFromMap(new IdentityHashMap<ModelProxy,Boolean>());
+		
+		for (Model m : models) collect(m.modelImplementation(), groups, seen);
+		
+		/* nothing to write: no transaction, and no eviction */
+		boolean changed = false;
+		for (ModelProxy m : seen) changed |= m.newRecord || m.dirty;
+		
+		if (!changed) return;
+		
+		java.sql.Connection connection = borrowConnection();
+		boolean local = transactionConnection() == null;
+		
+		try {
+			if (local) connection.setAutoCommit(false);
+			
+			for (Class type : groups.keySet()) {
+				List<ModelProxy> inserts = new ArrayList<ModelProxy>();
+				List<ModelProxy> updates = new ArrayList<ModelProxy>();
+				
+				for (ModelProxy m : groups.get(type))
+					if (m.newRecord) inserts.add(m); 
+					else if (m.dirty) updates.add(m);
+				
+				insertRecords(connection, type, inserts);
+				updateRecords(connection, type, updates);
+			}
+			
+			if (local) connection.commit();
+			
+		} catch (SQLException e) {
+			if (local) 
+				try { connection.rollback(); } catch (SQLException e1) { }
+				
+			throw new ModelRuntimeException(e.getMessage());
+			
+		} finally {
+			if (local) 
+				try { connection.setAutoCommit(true); 
+				} catch (SQLException e) { }
+				
+			releaseConnection(connection);
+		}
+		
+		Session session = this.session.get();
+		
+		for (ModelProxy m : seen) {
+			m.newRecord = m.dirty = false;
+			
+			Object id = m.fields.get(getCache().getModelId(m.type));
+			if (session != null) session.put(m.type, id, m.model);
+			
+			evict(m.type, id);
+		}
+	}
+	
+	/* Post-order visit: the supers first */
+	private void collect(ModelProxy m, Map<Class, List<ModelProxy>> groups, 
+	Set<ModelProxy> seen) {
+		
+		if (!seen.add(m)) return;
+		
+		for (Model s : m.supers.values()) 
+			collect(s.modelImplementation(), groups, seen);
+		
+		if (!groups.containsKey(m.type)) 
+			groups.put(m.type, new ArrayList<ModelProxy>());
+			
+		groups.get(m.type).add(m);
+	}
+	
+	/**	
+	 * Inserts new records with multi-row <code>INSERT</code> statements of
+	 * at most <code>batchSize</code> rows, and assigns the generated
+	 * <code>AUTO_INCREMENT</code> keys to the instances.
+	 */
+	private void insertRecords(java.sql.Connection connection, Class type, 
+	List<ModelProxy> records) throws SQLException {
+		
+		if (records.isEmpty()) return;
+		
+		schema.initSchema(type);
+		
+		String tN = getCache().tableName(type);
+		String idName = getCache().getModelId(type);
+		
+		List<Attribute> columns = new ArrayList<Attribute>();
+		List<String> names = new ArrayList<String>();
+		boolean generated = false;
+		
+		/* the auto incremented id is left to the database */
+		for (Attribute a : schema.getAttributes(type))
+			if (a.isAutoIncrement && a.name.equals(idName)) generated = true;
+			else { columns.add(a); names.add(a.name); }
+			
+		for (int from = 0; from < records.size(); from += batchSize) {
+			
+			List<ModelProxy> chunk = 
+				records.subList(from, Math.min(records.size(), from+batchSize));
+			
+			String sql = 
+				getQueryGenerator().generateINSERT(tN, names, chunk.size());
+			
+			PreparedStatement statement = generated ? 
+				connection.prepareStatement(sql,Statement.RETURN_GENERATED_KEYS): 
+				connection.prepareStatement(sql);
+			
+			ResultSet keys = null;
+			
+			try {
+				int p = 1;
+				for (ModelProxy m : chunk) 
+					for (Attribute a : columns) {
+						Object value = columnValue(m, a);
+						if (value == UNKNOWN) value = null;
+						
+						/* the id inherited from the super table */
+						if (a.name.equals(idName)) m.fields.put(idName, value);
+						
+						statement.setObject(p++, value);
+					}
+			
+				statement.executeUpdate();
+				
+				if (generated) {
+					Class idType = getCache().getModelIdType(type);
+					keys = statement.getGeneratedKeys();
+				
+					/* the keys are returned in the insertion order */
+					for (int i = 0; i < chunk.size() && keys.next(); i++)
+						chunk.get(i).fields.put(idName, 
+							idType.equals(Integer.TYPE) ? 
+							(Object) keys.getInt(1) : keys.getObject(1));
+				}
+				
+			} finally { close(keys, statement); }
+		}
+	}
+	
+	/**	
+	 * Updates the dirty records with batched <code>UPDATE</code> statements.
+	 * The foreign keys of connections never loaded are not written.
+	 */
+	private void updateRecords(java.sql.Connection connection, Class type, 
+	List<ModelProxy> records) throws SQLException {
+		
+		if (records.isEmpty()) return;
+		
+		schema.initSchema(type);
+		
+		String tN = getCache().tableName(type);
+		String idName = getCache().getModelId(type);
+		
+		java.sql.Timestamp now = 
+			new java.sql.Timestamp(System.currentTimeMillis());
+		
+		/* rows grouped by statement (the updated columns can differ) */
+		Map<String, List<Object[]>> batches = 
+			new LinkedHashMap<String, List<Object[]>>();
+		
+		for (ModelProxy m : records) {
+			m.fields.put("UpdatedAt", now);
+			
+			List<String> names = new ArrayList<String>();
+			List<Object> values = new ArrayList<Object>();
+			
+			for (Attribute a : schema.getAttributes(type)) {
+				if (a.isId) continue;
+				
+				Object value = columnValue(m, a);
+				if (value == UNKNOWN) continue;
+				
+				names.add(a.name); 
+				values.add(value);
+			}
+			
+			values.add(m.fields.get(idName));
+			
+			String sql = getQueryGenerator().generateUPDATE(tN, names, idName);
+			
+			if (!batches.containsKey(sql)) 
+				batches.put(sql, new ArrayList<Object[]>());
+				
+			batches.get(sql).add(values.toArray());
+		}
+		
+		for (String sql : batches.keySet()) {
+			PreparedStatement statement = connection.prepareStatement(sql);
+			
+			try {
+				int count = 0;
+				
+				for (Object[] row : batches.get(sql)) {
+					for (int i = 0; i < row.length; i++) 
+						statement.setObject(i+1, row[i]);
+						
+					statement.addBatch();
 					
-				Class returnType = 
-					getCache().getConnectionFieldType(type, fields[i]);
-
-				Model c = pack(returnType, rs);
-				prev.modelImplementation().addModels(fields[i],
-													 new Model[]{c}, true);
+					if (++count % batchSize == 0) statement.executeBatch();
+				}
+				
+				if (count % batchSize != 0) statement.executeBatch();
+				
+			} finally { close(null, statement); }
+		}
+	}
+	
+	/**
+	 * The value of a column for the given instance. For the keys of the 
+	 * super tables it's the id of the super instance, for the 
+	 * <code>BelongsTo</code> foreign keys the id of the owner.
+	 * @return The column value or <code>UNKNOWN</code> for a foreign key
+	 * that has never been loaded nor set.
+	 */
+	private Object columnValue(ModelProxy m, Attribute a) {
+		
+		if (!a.isAForeignKey) {
+			Object value = m.fields.get(a.name);
+			
+			/* the deferred LOBs are never written back */
+			if (value instanceof DeferredLob) return UNKNOWN;
+			
+			return m.partial && !m.fields.containsKey(a.name) ? UNKNOWN : 
+				value;
+		}
+		
+		/* key of a super table row */
+		if (a.isId) {
+			Model s = m.supers.get(a.type);
+			return s == null ? m.fields.get(a.name) : idValue(s);
+		}
+		
+		/* owner of a BelongsTo connection */
+		List<Model> owners = m.fetched.get(a.name.toLowerCase());
+		Object owner = m.fields.get(a.name);
+		
+		if (owner == null && owners != null) 
+			owner = owners.isEmpty() ? null : owners.get(0);
+			
+		else if (owner == null && !m.fields.containsKey(a.name)) 
+			return UNKNOWN;
+		
+		return owner instanceof Model ? idValue((Model) owner) : owner;
+	}
+	
+	/** 
+	 * The id value of a model instance. The id is a column of the table 
+	 * of the model, so it's known also if the instance is partially loaded.
+	 */
+	protected Object idValue(Model m) {
+		return m.modelImplementation().fields.get(
+			getCache().getModelId(m.modelInterface()));
+	}
+	
+	/**
+	 * Deletes the given models with a <code>DELETE ... WHERE id IN 
+	 * (...)</code> per table, in chunks of <code>deleteChunkSize</code> ids.
+	 * <p>The dependent rows are removed by the <code>ON DELETE 
+	 * CASCADE</code> constraints of the schema: for inheriting models the 
+	 * rows of the root super tables are deleted (the subclass rows follow), 
+	 * and the parts of a composition follow their owner.</p>
+	 * <p>The deleted rows are evicted from the factory caches and the 
+	 * instances become new records.</p>
+	 * @param models The models to delete.
+	 * @throws ModelRuntimeException If the database rejects a statement.
+	 */
+	protected void deleteModels(Model... models) {
+		
+		/* The ids to delete, grouped by root table */
+		Map<Class, List<Object>> groups = 
+			new LinkedHashMap<Class, List<Object>>();
+		
+		for (Model m : models) 
+			if (!m.newRecord()) collectRoots(m.modelImplementation(), groups);
+		
+		if (groups.isEmpty()) return;
+		
+		java.sql.Connection connection = borrowConnection();
+		boolean local = transactionConnection() == null;
+		
+		try {
+			if (local) connection.setAutoCommit(false);
+			
+			for (Class type : groups.keySet()) {
+				List<Object> ids = groups.get(type);
+				
+				String tN = getCache().tableName(type);
+				String idName = getCache().getModelId(type);
+				
+				for (int from = 0; from < ids.size(); from += deleteChunkSize) {
+					List<Object> chunk = ids.subList(from, 
+						Math.min(ids.size(), from + deleteChunkSize));
+					
+					PreparedStatement statement = connection.prepareStatement(
+						getQueryGenerator().generateDELETE(tN, idName, 
+						chunk.size()));
+					
+					try {
+						for (int i = 0; i < chunk.size(); i++) 
+							statement.setObject(i+1, chunk.get(i));
+						
+						statement.executeUpdate();
+						
+					} finally { close(null, statement); }
+				}
 			}
+			
+			if (local) connection.commit();
+			
+		} catch (SQLException e) {
+			if (local) 
+				try { connection.rollback(); } catch (SQLException e1) { }
+				
+			throw new ModelRuntimeException(e.getMessage());
+			
+		} finally {
+			if (local) 
+				try { connection.setAutoCommit(true); 
+				} catch (SQLException e) { }
+				
+			releaseConnection(connection);
 		}
 		
+		for (Model m : models) forget(m.modelImplementation());
+		
+		/* the rows deleted in cascade by the database are unknown */
+		Set<Class> related = new HashSet<Class>();
+		
+		for (Model m : models) 
+			related.addAll(getCache().getAllReleatedClasses(
+				m.modelInterface()));
+		
+		for (Class r : related) {
+			if (entityCache != null) 
+				entityCache.evictTable(getCache().tableName(r));
+			
+			evict(r, null);
+		}
 	}
 	
+	/* The rows of the top super tables: the others are deleted in cascade */
+	private void collectRoots(ModelProxy m, Map<Class, List<Object>> groups) {
+		
+		if (m.supers.isEmpty()) {
+			Object id = m.fields.get(getCache().getModelId(m.type));
+			
+			if (!groups.containsKey(m.type)) 
+				groups.put(m.type, new ArrayList<Object>());
+			
+			if (!groups.get(m.type).contains(id)) groups.get(m.type).add(id);
+			return;
+		}
+		
+		for (Model s : m.supers.values()) 
+			collectRoots(s.modelImplementation(), groups);
+	}
 	
+	/* Evicts a deleted instance (and its supers) and marks it as new */
+	private void forget(ModelProxy m) {
+		Object id = m.fields.get(getCache().getModelId(m.type));
+		
+		Session session = this.session.get();
+		if (session != null) session.remove(m.type, id);
+		
+		evict(m.type, id);
+		
+		m.newRecord = m.dirty = true;
+		
+		for (Model s : m.supers.values()) forget(s.modelImplementation());
+	}
 	
+	/**
+	 * Removes a row from the in-memory caches of the factory, and the 
+	 * cached results of the queries that read its table. 
+	 * It's called for every row written or deleted, and again when the 
+	 * {@link Transaction} that wrote it ends.
+	 * @param type The model interface mapped by the table.
+	 * @param id The row id (<code>null</code> for the whole table).
+	 */
+	protected void evict(Class type, Object id) { 
+		String tN = getCache().tableName(type);
+		
+		if (entityCache != null) entityCache.evict(tN, id);
+		if (queryCache != null) queryCache.invalidate(tN);
+		
+		if (transactionConnection() != null) {
+			List<Object[]> pending = pendingEvictions.get();
+			
+			if (pending == null) {
+				pending = new ArrayList<Object[]>();
+				pendingEvictions.set(pending);
+			}
+			
+			pending.add(new Object[] {type, id});
+		}
+	}
 }
\ No newline at end of file
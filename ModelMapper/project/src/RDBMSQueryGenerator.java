@@ -35,4 +35,94 @@ public interface RDBMSQueryGenerator {
 		Collection<String> what, Collection<String> from, String criteria, 
 		String orderBy, boolean desc, int limit);
 	
+	/**
+	 * Generates a join to append to the first table of the 
+	 * <code>from</code> of the other statements.
+	 * @param table The joined table.
+	 * @param outer <code>true</code> for a <code>LEFT JOIN</code>, 
+	 * <code>false</code> for an <code>INNER JOIN</code>.
+	 * @param condition The join condition.
+	 * @return The generated clause.
+	 */
+	public String generateJOIN(String table, boolean outer, String condition);
+	
+	/**
+	 * Generates a <code>SELECT</code> of the given columns only.
+	 * @param columns The selected columns (<code>table.field</code>).
+	 * @param from The tables to add in the search.
+	 * @param criteria The where statement.
+	 * @param orderBy The order criteria.
+	 * @param desc <code>true</code> for descending, <code>false</code> for
+	 * ascending.
+	 * @param limit A limit to the <code>SELECT</code> result set.
+	 * @return The generated SQL query.
+	 */
+	public String generatePROJECTION(
+		List<String> columns, Collection<String> from, String criteria, 
+		String orderBy, boolean desc, int limit);
+	
+	/**
+	 * Generates a multi-row <code>INSERT</code> statement.
+	 * @param table The table name.
+	 * @param columns The columns to insert.
+	 * @param rows The number of rows (groups of <code>?</code> parameters).
+	 * @return The generated SQL statement.
+	 */
+	public String generateINSERT(String table, List<String> columns, 
+		int rows);
+	
+	/**
+	 * Generates an <code>UPDATE</code> of a single row, identified by its
+	 * id as the last parameter.
+	 * @param table The table name.
+	 * @param columns The columns to update.
+	 * @param idName The table id column.
+	 * @return The generated SQL statement.
+	 */
+	public String generateUPDATE(String table, List<String> columns, 
+		String idName);
+	
+	/**
+	 * Generates a <code>DELETE</code> of the rows with the given ids.
+	 * @param table The table name.
+	 * @param idName The table id column.
+	 * @param count The number of ids (<code>?</code> parameters).
+	 * @return The generated SQL statement.
+	 */
+	public String generateDELETE(String table, String idName, int count);
+	
+	/**
+	 * Generates a <code>SELECT</code> of a single aggregate value.
+	 * @param function The aggregate function (<code>COUNT</code>, 
+	 * <code>SUM</code>, <code>AVG</code>, <code>MIN</code> or 
+	 * <code>MAX</code>).
+	 * @param column The aggregated column (<code>*</code> for 
+	 * <code>COUNT</code>).
+	 * @param from The tables to add in the search.
+	 * @param criteria The where statement.
+	 * @return The generated SQL query.
+	 */
+	public String generateAGGREGATE(String function, String column, 
+		Collection<String> from, String criteria);
+	
+	/**
+	 * Generates a <code>SELECT</code> that returns a row if any record 
+	 * matches the criteria, and no rows otherwise.
+	 * @param from The tables to add in the search.
+	 * @param criteria The where statement.
+	 * @return The generated SQL query.
+	 */
+	public String generateEXISTS(Collection<String> from, String criteria);
+	
+	/**
+	 * Generates the condition of a keyset (seek) pagination: the rows 
+	 * whose key, compared as a row value, follows the given one.
+	 * @param columns The key columns, in order.
+	 * @param greater <code>true</code> for the keys greater than the 
+	 * parameters, <code>false</code> for the lesser ones.
+	 * @return The condition, with a <code>?</code> parameter for every
+	 * column.
+	 */
+	public String generateSEEK(List<String> columns, boolean greater);
+	
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import modelmapper.exception.*;
 import modelmapper.annotation.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.lang.reflect.*;
 
 /**
@@ -27,17 +28,19 @@ import java.lang.reflect.*;
  */
 public class RDBMSSchema {
 	
+	/* concurrent: read without locks, written by initSchema */
 	private Map<Class, List<Attribute>> 
-		attributes = new HashMap<Class, List<Attribute>>();
+		attributes = new ConcurrentHashMap<Class, List<Attribute>>();
 	
 	private Map<Class, List<Class>> 
 		klass =  new HashMap<Class, List<Class>>();
 	
 	private Map<String, Relationship> 
-		relationships = new HashMap<String, Relationship>();
+		relationships = new ConcurrentHashMap<String, Relationship>();
 	
 	private List<Class> builded  = new ArrayList<Class>();
-	private List<Class> analyzed = new ArrayList<Class>();
+	private Set<Class> analyzed = 
+		Collections.newSetFromMap(new ConcurrentHashMap<Class, Boolean>());
 	private List<Class> created  = new ArrayList<Class>();
 	
 	private RDBMSModelFactory factory;
@@ -66,7 +69,17 @@ public class RDBMSSchema {
 		
 		if (analyzed.contains(type)) return;
 		
-		List<Class> supers = factory.getCache().getAllSupers(type);
+		synchronized (this) { 
+			if (!analyzed.contains(type)) analyzeSchema(type); 
+		}
+	}
+	
+	/* The schema of a model not analyzed yet */
+	private void analyzeSchema(Class type) {
+		
+		/* copy: the cached list must not be modified */
+		List<Class> supers = 
+			new ArrayList<Class>(factory.getCache().getAllSupers(type));
 		supers.add(type);
 		
 		Set<Class> back = new HashSet<Class>();
@@ -124,14 +137,19 @@ public class RDBMSSchema {
 	 * @return The string containing the DDL statementes for creating the 
 	 * database schema.
 	 */
-	public String createSchema(Class... interfaces) {
+	public synchronized String createSchema(Class... interfaces) {
+		
+		/* the interfaces already mapped are skipped */
+		List<Class> fresh = new ArrayList<Class>();
+		for (Class i : interfaces) 
+			if (!created.contains(i)) { created.add(i); fresh.add(i); }
+		
+		if (fresh.isEmpty()) return "";
+		interfaces = fresh.toArray(new Class[fresh.size()]);
 		
 		/* init attributes */
 		for (Class i : interfaces) {
 			
-			if (created.contains(i)) return "";
-			else created.add(i);
-			
 			Method[] getters = CommonStatic.getGetters(i);
 			List<Attribute> interfaceAttributes = new ArrayList<Attribute>();
 			
@@ -272,6 +290,18 @@ public class RDBMSSchema {
 		return relationships.get(name); 
 	}
 	
+	/**
+	 * Returns the columns of the table mapped by <code>type</code>, 
+	 * including the foreign keys to the owners and to the super tables.
+	 * @param type A model interface, already initialized by 
+	 * <code>initSchema</code>.
+	 * @return The list of {@link Attribute}, or <code>null</code> if the
+	 * model has not been mapped yet.
+	 */
+	public List<Attribute> getAttributes(Class type) {
+		return attributes.get(type);
+	}
+	
 	/**
 	 * Search all the {@link modelmapper.annotation.Connection} annotations in 
 	 * the given class and recreate a map with the relational references 
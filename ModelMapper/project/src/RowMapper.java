@@ -0,0 +1,146 @@
+// 
+//  RowMapper
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import java.sql.*;
+
+/**
+ * Reads the columns of a model table from the rows of a {@link QueryPlan}
+ * result set into the slots of a {@link FieldMap}.
+ * <p>A mapper is compiled once per plan and table, from the
+ * {@link ResultSetMetaData} of the first execution: every slot is bound to
+ * its column index and to a typed getter chosen from the field type 
+ * (<code>getInt</code>, <code>getDouble</code>, <code>getTimestamp</code>,
+ * ...), so reading a row doesn't look up labels, and the primitive fields
+ * are never boxed.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public final class RowMapper {
+
+	/* getters */
+	private static final int OBJECT = 0, INT = 1, LONG = 2, DOUBLE = 3, 
+		STRING = 4, TIMESTAMP = 5, DATE = 6, TIME = 7, BLOB = 8, CLOB = 9;
+
+	private final ModelLayout layout;
+
+	/* column index of each slot, -1 if it's not read */
+	private final int[] columns;
+	private final int[] getters;
+
+	private final boolean partial;
+
+	/**
+	 * @param plan The executed plan.
+	 * @param rs The result set of the plan.
+	 * @param table The table of the model.
+	 * @param layout The layout of the model.
+	 */
+	RowMapper(QueryPlan plan, ResultSet rs, String table, ModelLayout layout)
+	throws SQLException {
+
+		this.layout = layout;
+
+		int size = layout.size();
+		columns = new int[size];
+		getters = new int[size];
+
+		boolean partial = false;
+
+		for (int slot = 0; slot < size; slot++) {
+			int c = plan.column(rs, table, layout.name(slot));
+
+			/* no table name in the metadata (e.g. for an alias) */
+			if (c <= 0 && plan.fields == null && !layout.isDeferred(slot) &&
+				!layout.isForeignKey(slot))
+
+				c = find(rs, table + "." + layout.name(slot));
+
+			/* not selected by a projection */
+			if (c <= 0 && plan.fields != null && !layout.isDeferred(slot))
+				partial = true;
+
+			columns[slot] = c;
+			getters[slot] = layout.isForeignKey(slot) ? 
+				OBJECT : getter(layout.type(slot));
+		}
+
+		this.partial = partial;
+	}
+
+	private static int find(ResultSet rs, String label) {
+		try { return rs.findColumn(label); } 
+		catch (SQLException e) { return -1; }
+	}
+
+	private static int getter(Class type) {
+		if (type == Integer.TYPE) return INT;
+		if (type == Long.TYPE) return LONG;
+		if (type == Double.TYPE) return DOUBLE;
+		if (type == String.class) return STRING;
+		if (type == Timestamp.class) return TIMESTAMP;
+		if (type == java.sql.Date.class) return DATE;
+		if (type == Time.class) return TIME;
+		if (type == Blob.class) return BLOB;
+		if (type == Clob.class) return CLOB;
+
+		return OBJECT;
+	}
+
+	/** The column index of the slot, <code>-1</code> if it's not read */
+	public int column(int slot) { return columns[slot]; }
+
+	/**
+	 * Checks if the plan is a projection that doesn't read some of the 
+	 * fields (the deferred LOBs aside).
+	 */
+	public boolean isPartial() { return partial; }
+
+	/**
+	 * Reads the columns of the current row into the slots they are bound 
+	 * to. The other slots are left untouched.
+	 */
+	public void read(ResultSet rs, FieldMap values) throws SQLException {
+
+		for (int slot = 0; slot < columns.length; slot++) {
+			int c = columns[slot];
+			if (c <= 0) continue;
+
+			switch (getters[slot]) {
+				case INT: 
+					int i = rs.getInt(c);
+					if (rs.wasNull()) values.setValue(slot, null); 
+					else values.setInt(slot, i);
+					break;
+
+				case LONG: 
+					long l = rs.getLong(c);
+					if (rs.wasNull()) values.setValue(slot, null); 
+					else values.setLong(slot, l);
+					break;
+
+				case DOUBLE: 
+					double d = rs.getDouble(c);
+					if (rs.wasNull()) values.setValue(slot, null); 
+					else values.setDouble(slot, d);
+					break;
+
+				case STRING: values.setValue(slot, rs.getString(c)); break;
+				case TIMESTAMP: values.setValue(slot, rs.getTimestamp(c)); break;
+				case DATE: values.setValue(slot, rs.getDate(c)); break;
+				case TIME: values.setValue(slot, rs.getTime(c)); break;
+				case BLOB: values.setValue(slot, rs.getBlob(c)); break;
+				case CLOB: values.setValue(slot, rs.getClob(c)); break;
+
+				default: values.setValue(slot, rs.getObject(c));
+			}
+		}
+	}
+
+	public ModelLayout layout() { return layout; }
+}
@@ -0,0 +1,117 @@
+// 
+//  Session
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import java.util.*;
+
+/**
+ * An identity map (first-level cache) of the models loaded or saved in the
+ * current thread, indexed by model interface and id.
+ * <p>While a session is open every row read by the factory is packed only
+ * once: finds, includes and connection fetches return the same instance
+ * for the same record, so the connections already fetched by an instance
+ * are not fetched again.</p>
+ * <pre>Session session = factory.openSession();
+ * try {
+ *     Corporation a = factory.find(Corporation.class, "Name = ?", "X")[0];
+ *     Corporation b = student.getCorporations()[0];  // a, if the same row
+ * } finally { session.close(); }</pre>
+ * <p>A {@link Transaction} opens a session for its duration, unless one is
+ * already open. Sessions hold all the models they see, so they should be
+ * short lived (e.g. a request, or a unit of work).</p>
+ * <p>It's thread safe: the included connections of a find may be fetched
+ * by other threads, in the session of the thread that runs the find.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+public class Session implements java.io.Closeable {
+
+	private RDBMSModelFactory factory;
+
+	/* The session shadowed by this one */
+	protected Session previous;
+
+	private Map<Class, Map<Object, Model>> models =
+		new HashMap<Class, Map<Object, Model>>();
+
+	private boolean closed = false;
+
+	protected Session(RDBMSModelFactory factory, Session previous) {
+		this.factory = factory;
+		this.previous = previous;
+	}
+
+	/**
+	 * Returns the instance of <code>type</code> with the given id.
+	 * @return The instance, <code>null</code> if it's not in the session.
+	 */
+	public synchronized <T extends Model> T get(Class<T> type, Object id) {
+		Map<Object, Model> byId = models.get(type);
+		if (byId == null || id == null) return null;
+
+		return (T) byId.get(key(id));
+	}
+
+	/**
+	 * Adds an instance to the session.
+	 * Instances without an id are ignored.
+	 */
+	protected synchronized void put(Class type, Object id, Model model) {
+		if (id == null || closed) return;
+
+		Map<Object, Model> byId = models.get(type);
+
+		if (byId == null) {
+			byId = new HashMap<Object, Model>();
+			models.put(type, byId);
+		}
+
+		byId.put(key(id), model);
+	}
+
+	/** Removes an instance (e.g. after it's been deleted) */
+	public synchronized void remove(Class type, Object id) {
+		Map<Object, Model> byId = models.get(type);
+		if (byId != null && id != null) byId.remove(key(id));
+	}
+
+	/** Detaches all the instances */
+	public synchronized void clear() { models.clear(); }
+
+	/** The number of instances in the session */
+	public synchronized int size() {
+		int size = 0;
+		for (Map<Object, Model> byId : models.values()) size += byId.size();
+
+		return size;
+	}
+
+	/**
+	 * Closes the session, restoring the one it was opened in (if any).
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed) return;
+
+			closed = true;
+			models.clear();
+		}
+
+		factory.closeSession(this);
+	}
+
+	/* Integer, long (...) ids read from different columns are the same */
+	static Object key(Object id) {
+		if (id instanceof Integer || id instanceof Long ||
+			id instanceof Short || id instanceof Byte)
+
+			return ((Number) id).longValue();
+
+		return id;
+	}
+}
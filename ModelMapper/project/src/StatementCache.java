@@ -0,0 +1,208 @@
+// 
+//  StatementCache
+//  ModelMapper
+//  
+//  Created by Querella Luca and Usbergo Alex on 2010-01-31.
+//  Università di Torino 
+//
+
+package modelmapper;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A bounded LRU cache of {@link PreparedStatement} for a single physical
+ * connection, indexed by SQL text.
+ * <p>The statements handed out are proxies, a new one for every borrow so
+ * that a reference kept after <code>close()</code> can't run the statement
+ * of the next borrower: <code>close()</code> clears
+ * the parameters and the batch, restores the fetch size, the max rows and
+ * the query timeout the statement was prepared with and gives it back to
+ * the cache, while the
+ * real statement is closed only when it's evicted or when the connection
+ * is closed. If the same SQL is requested while its cached statement is
+ * still open (e.g. nested queries in a transaction) a plain statement is
+ * prepared instead. A statement that threw an exception is evicted
+ * when it's closed.</p>
+ * @author Alex Usbergo, Luca Querella
+ */
+class StatementCache {
+
+	private java.sql.Connection connection;
+	private int capacity;
+
+	/* Counters shared by all the caches of the same pool */
+	private AtomicLong hits, misses;
+
+	private LinkedHashMap<String, Entry> statements;
+
+	StatementCache(java.sql.Connection connection, int capacity,
+	AtomicLong hits, AtomicLong misses) {
+
+		this.connection = connection;
+		this.capacity = capacity;
+		this.hits = hits;
+		this.misses = misses;
+
+		/* access ordered map: the eldest entry is the least recently used */
+		this.statements = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> e) {
+				if (size() <= StatementCache.this.capacity) return false;
+
+				e.getValue().evict();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns a prepared statement for <code>sql</code>, reusing the cached
+	 * one when it's available.
+	 */
+	synchronized PreparedStatement prepare(String sql) throws SQLException {
+
+		Entry e = statements.get(sql);
+
+		if (e != null && !e.inUse) {
+			hits.incrementAndGet();
+			e.inUse = true;
+			return e.lease();
+		}
+
+		misses.incrementAndGet();
+
+		/* Busy: it can't be shared, so it's not cached */
+		if (e != null || capacity == 0) return connection.prepareStatement(sql);
+
+		e = new Entry(sql, connection.prepareStatement(sql));
+		e.inUse = true;
+		statements.put(sql, e);
+
+		return e.lease();
+	}
+
+	/** Closes all the cached statements */
+	synchronized void clear() {
+		for (Entry e : statements.values()) e.evict();
+		statements.clear();
+	}
+
+	/**
+	 * A cached statement.
+	 */
+	private class Entry {
+
+		private String sql;
+		private PreparedStatement statement;
+		private boolean inUse, evicted, failed;
+
+		/* The settings to restore on close */
+		private int fetchSize, maxRows, queryTimeout;
+
+		Entry(String sql, PreparedStatement statement) throws SQLException {
+			this.sql = sql;
+			this.statement = statement;
+
+			this.fetchSize = statement.getFetchSize();
+			this.maxRows = statement.getMaxRows();
+			this.queryTimeout = statement.getQueryTimeout();
+		}
+
+		/* A new proxy for the current borrower */
+		PreparedStatement lease() {
+			return (PreparedStatement) Proxy.newProxyInstance(
+				PreparedStatement.class.getClassLoader(),
+				new Class[] {PreparedStatement.class}, new Lease(this));
+		}
+
+		/* Called by the cache, with its lock */
+		void evict() {
+			evicted = true;
+			if (!inUse) closeStatement();
+		}
+
+		private void closeStatement() {
+			try { statement.close(); } catch (SQLException e) { }
+		}
+
+		/* Clears what the last user left, false if it can't be reused */
+		private boolean reset() {
+			if (failed) return false;
+
+			try {
+				statement.clearParameters();
+				statement.clearBatch();
+
+				if (statement.getFetchSize() != fetchSize)
+					statement.setFetchSize(fetchSize);
+
+				if (statement.getMaxRows() != maxRows)
+					statement.setMaxRows(maxRows);
+
+				if (statement.getQueryTimeout() != queryTimeout)
+					statement.setQueryTimeout(queryTimeout);
+
+			} catch (SQLException e) { return false; }
+
+			return true;
+		}
+	}
+
+	/**
+	 * The invocation handler behind a borrowed statement proxy: once
+	 * closed, every call but <code>close()</code> and
+	 * <code>isClosed()</code> is refused.
+	 */
+	private class Lease implements InvocationHandler {
+
+		private Entry e;
+		private boolean open = true;
+
+		Lease(Entry e) { this.e = e; }
+
+		public Object invoke(Object p, Method method, Object[] args)
+		throws Throwable {
+
+			String name = method.getName();
+
+			if (name.equals("close") && args == null) {
+				synchronized (StatementCache.this) {
+					if (!open) return null;
+					open = false;
+					e.inUse = false;
+
+					if (!e.evicted && !e.reset()) {
+						statements.remove(e.sql);
+						e.evicted = true;
+					}
+
+					if (e.evicted) e.closeStatement();
+				}
+				return null;
+			}
+
+			if (name.equals("isClosed") && args == null)
+				return !open || e.statement.isClosed();
+
+			if (name.equals("equals") && args != null && args.length == 1)
+				return p == args[0];
+
+			if (name.equals("hashCode") && args == null)
+				return System.identityHashCode(p);
+
+			if (!open)
+				throw new SQLException("Statement already returned to cache.");
+
+			try { return method.invoke(e.statement, args);
+			} catch (InvocationTargetException ex) {
+
+				/* e.g. a failed batch: it's not given back to the cache */
+				e.failed = true;
+				throw ex.getCause();
+			}
+		}
+	}
+}
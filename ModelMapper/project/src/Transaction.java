@@ -71,6 +71,13 @@ import java.sql.SQLException;
  * <p>The JDBC transaction type used is 
  * {@link Connection#TRANSACTION_SERIALIZABLE}.</p>
  * 
+ * <p>The connection is borrowed from the factory pool for the whole 
+ * transaction and bound to the executing thread, then given back once the
+ * transaction is committed or rolled back.</p>
+ * 
+ * <p>If no {@link Session} is open, the transaction opens one, so the
+ * same record is always the same instance within the transaction.</p>
+ * 
  * @see java.sql.Connection
  */
 public abstract class Transaction<T> {
@@ -122,34 +129,62 @@ public abstract class Transaction<T> {
 	 * @see #run()
 	 */
 	public T execute() throws SQLException {
+		
+		/* Nested transactions join the one already running */
+		if (factory.transactionConnection() != null) return run();
+		
 		Connection conn = null;
 		SQLException toThrow = null;
 		T back = null;
 		
+		int isolation = -1;
+		boolean committed = false;
+		
+		/* the identity map of the transaction */
+		Session session = 
+			factory.currentSession() == null ? factory.openSession() : null;
+		
 		try {
-			conn = factory.getConnection();
+			conn = factory.borrowConnection();
 			
+			isolation = conn.getTransactionIsolation();
 			conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
 			conn.setAutoCommit(false);
 			
+			/* every operation of run() in this thread will use conn */
+			factory.bindTransaction(conn);
+			
 			back = Transaction.this.run();
 			
 			conn.commit();
-		} catch (SQLException e) {
-			if (conn != null) {
-				try {conn.rollback();
-				} catch (SQLException e1) { /* toHandle */ }
-			}
+			committed = true;
 			
+		} catch (SQLException e) {
 			toThrow = e;
+			
 		} finally {
-			if (conn == null) { return null; }
+			if (session != null) session.close();
 			
-			try {
-				conn.setAutoCommit(true);
+			if (conn != null) {
+				factory.bindTransaction(null);
+				
+				/* 
+				 * whatever run() threw (also a RuntimeException): 
+				 * setAutoCommit(true) would commit the partial work
+				 */
+				if (!committed) {
+					try { conn.rollback(); 
+					} catch (SQLException e) { /* toHandle */ }
+				}
+				
+				try {
+					conn.setAutoCommit(true);
+					
+					if (isolation != -1) conn.setTransactionIsolation(isolation);
+				} catch (SQLException e) {
+				}
 				
-				conn.close();
-			} catch (SQLException e) {
+				factory.releaseConnection(conn);
 			}
 		}
 		
@@ -0,0 +1,99 @@
+import modelmapper.*;
+import modelmapper.exception.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks the asynchronous operations of the {@link Finder}, against the
+ * {@link ScriptedDriver}: they run on the executor of the factory, with
+ * the state the finder had when they were called.
+ */
+public class AsyncCheck {
+
+	public static void main(String[] args) throws Exception {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 2));
+		factory.setEntityCache(null);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor(
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					return new Thread(r, "finder-async");
+				}
+			});
+
+		factory.setExecutor(executor);
+
+		try {
+			executor(factory);
+			failure(factory);
+		} finally { executor.shutdown(); }
+	}
+
+	public static void executor(RDBMSModelFactory factory) throws Exception {
+
+		Check.title("Executor of the factory");
+
+		ScriptedDriver.answer("COUNT", ScriptedDriver.row("Person.Count", 2L));
+		ScriptedDriver.answer("FROM person", person(1, "Ann"), person(2, "Bob"));
+		ScriptedDriver.answer("FROM person", person(1, "Ann"));
+
+		Finder<Person> finder =
+			new Finder<Person>(Person.class, factory).where("Age", 30);
+
+		CompletableFuture<Long> count = finder.countAsync();
+		CompletableFuture<Person[]> all = finder.allAsync();
+		CompletableFuture<Person> first = finder.firstAsync();
+
+		/* changed after the calls: the operations don't see it */
+		finder.where("LastName", "Roe");
+
+		Check.equal("count", count.get(), 2L);
+		Check.equal("all", all.get().length, 2);
+		Check.equal("first", first.get().getFirstName(), "Ann");
+
+		Check.equal("run by", ScriptedDriver.thread("FROM person"),
+			"finder-async");
+
+		for (String s : ScriptedDriver.statements())
+			Check.isTrue("state when called", !s.contains("LastName"));
+
+		Check.equal("borrowed", factory.getConnectionPool().borrowedCount(), 0);
+	}
+
+	public static void failure(RDBMSModelFactory factory) throws Exception {
+
+		Check.title("Failure");
+
+		/* the pooled connections fail their statements */
+		ScriptedDriver.broken = true;
+
+		CompletableFuture<Person[]> all =
+			new Finder<Person>(Person.class, factory).allAsync();
+
+		Throwable cause = null;
+
+		try { all.get();
+		} catch (ExecutionException e) { cause = e.getCause();
+		} finally { ScriptedDriver.broken = false; }
+
+		Check.isTrue("completed exceptionally", all.isCompletedExceptionally());
+		Check.isTrue("find exception", cause instanceof ModelRuntimeException);
+		Check.equal("borrowed", factory.getConnectionPool().borrowedCount(), 0);
+
+		ScriptedDriver.statements();
+	}
+
+	private static Map<String, Object> person(int id, String name) {
+
+		return ScriptedDriver.row("Person.Id", id, "Person.FirstName", name,
+			"Person.LastName", "Doe", "Person.Age", 30,
+			"Person.Employer", null, "Person.ManagedCorporation", null);
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * The assertions of the checks: every assertion prints what it verified
+ * and a failed one throws, so that the check exits with an error.
+ */
+public class Check {
+
+	public static void equal(String what, Object value, Object expected) {
+
+		boolean ok = value == null ? expected == null : value.equals(expected);
+		System.out.println(what + ": " + value);
+
+		if (!ok) throw new AssertionError(what + ": expected " + expected +
+			", was " + value);
+	}
+
+	public static void same(String what, Object value, Object expected) {
+
+		System.out.println(what + ": " + (value == expected));
+
+		if (value != expected) throw new AssertionError(what +
+			": expected the same instance of " + expected + ", was " + value);
+	}
+
+	public static void isTrue(String what, boolean value) {
+		equal(what, value, true);
+	}
+
+	public static void title(String title) {
+		System.out.println("\n" + title + ": \n");
+	}
+}
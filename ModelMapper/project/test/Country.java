@@ -0,0 +1,25 @@
+import modelmapper.*;
+import modelmapper.annotation.*;
+
+import java.sql.*;
+
+@Cacheable
+public interface Country extends Model {
+
+	@Id
+	public String getCode();
+	public void setCode(String code);
+
+	public String getName();
+	public void setName(String name);
+
+	public Timestamp getIndependence();
+	public void setIndependence(Timestamp t);
+
+	@Eager
+	public Blob getFlag();
+	public void setFlag(Blob flag);
+
+	public Clob getHistory();
+	public void setHistory(Clob history);
+}
\ No newline at end of file
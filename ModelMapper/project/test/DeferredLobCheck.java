@@ -0,0 +1,73 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks the deferred loading of the Blob and Clob fields not marked as
+ * {@link modelmapper.annotation.Eager}, against the {@link ScriptedDriver}.
+ */
+public class DeferredLobCheck {
+
+	public static void main(String[] args) throws Exception {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 2));
+
+		Check.title("Deferred Content, eager Summary");
+
+		ScriptedDriver.answer(ScriptedDriver.row("Document.DocumentId", 1,
+			"Document.Title", "Readme", "Document.Summary", "A summary"));
+
+		Document d = new Finder<Document>(Document.class, factory).all()[0];
+
+		/* the deferred column isn't selected */
+		Check.equal("selected", ScriptedDriver.statements().get(0),
+			"SELECT Document.Summary,Document.DocumentId,Document.Title," +
+			"Document.CreatedAt,Document.UpdatedAt FROM document WHERE  true " +
+			" ORDER BY Document.DocumentId DESC  []");
+		Check.equal("summary", d.getSummary().getSubString(1, 9), "A summary");
+
+		Blob content = d.getContent();
+
+		ScriptedDriver.answer(ScriptedDriver.row("Document.Length", 11L));
+		Check.equal("length", content.length(), 11L);
+
+		ScriptedDriver.answer(ScriptedDriver.row("Document.Content",
+			"hello world".getBytes()));
+
+		Check.equal("from offset",
+			new String(content.getBinaryStream(7, 5).readAllBytes()), "world");
+
+		ScriptedDriver.answer(ScriptedDriver.row("Document.Content",
+			"hello world".getBytes()));
+
+		/* the connection is given back when the stream is closed */
+		InputStream in = content.getBinaryStream();
+
+		Check.equal("borrowed", factory.getConnectionPool().borrowedCount(), 1);
+		Check.equal("streamed", new String(in.readAllBytes()), "hello world");
+		in.close();
+		Check.equal("borrowed after", factory.getConnectionPool().
+			borrowedCount(), 0);
+
+		Check.equal("reads", ScriptedDriver.statements(), Arrays.asList(
+			"SELECT OCTET_LENGTH(Document.Content) FROM document WHERE " +
+			"Document.DocumentId = ? [1]",
+			"SELECT Document.Content FROM document WHERE " +
+			"Document.DocumentId = ? [1]",
+			"SELECT Document.Content FROM document WHERE " +
+			"Document.DocumentId = ? [1]"));
+
+		/* an update doesn't write the content back */
+		d.setTitle("Read me");
+		d.save();
+
+		Check.isTrue("not written", ScriptedDriver.statements().get(0).
+			startsWith("batch UPDATE Document SET Summary = ?, Title = ?,"));
+	}
+}
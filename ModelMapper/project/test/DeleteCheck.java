@@ -0,0 +1,58 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks the grouped, chunked delete of the {@link MySQLModelFactory},
+ * against the {@link ScriptedDriver} (the generated keys start from 100).
+ */
+public class DeleteCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 1));
+		factory.setDeleteChunkSize(2);
+
+		Check.title("Delete [deleteChunkSize 2]");
+
+		Corporation[] c = new Corporation[3];
+
+		for (int i = 0; i < c.length; i++) {
+			c[i] = factory.create(Corporation.class);
+			c[i].setName("Corporation " + i);
+		}
+
+		Student ann = factory.create(Student.class);
+		ann.setEmail("ann@mail");
+
+		Student bob = factory.create(Student.class);
+		bob.setEmail("bob@mail");
+
+		/* a new record isn't deleted */
+		Corporation unsaved = factory.create(Corporation.class);
+
+		factory.saveAll(c[0], c[1], c[2], ann, bob);
+		ScriptedDriver.statements();
+
+		factory.delete(c[0], ann, c[1], c[2], bob, unsaved);
+
+		/* grouped by table; the student rows follow in cascade */
+		Check.equal("statements", ScriptedDriver.statements(), Arrays.asList(
+			"DELETE FROM Corporation WHERE CorporateId IN (?,?) [100, 101]",
+			"DELETE FROM Corporation WHERE CorporateId IN (?) [102]",
+			"DELETE FROM Person WHERE Id IN (?,?) [103, 104]",
+			"DELETE FROM Account WHERE Email IN (?,?) [ann@mail, bob@mail]",
+			"COMMIT"));
+
+		Check.isTrue("new records", c[0].newRecord() && ann.newRecord());
+
+		/* nothing left to delete */
+		factory.delete(c);
+		Check.equal("statements again", ScriptedDriver.statements().size(), 0);
+	}
+}
@@ -0,0 +1,22 @@
+import modelmapper.*;
+import modelmapper.annotation.*;
+
+import java.sql.*;
+
+public interface Document extends Model {
+
+	@Id
+	@AutoIncrement
+	public int getDocumentId();
+	public void setDocumentId(int id);
+
+	public String getTitle();
+	public void setTitle(String title);
+
+	public Blob getContent();
+	public void setContent(Blob content);
+
+	@Eager
+	public Clob getSummary();
+	public void setSummary(Clob summary);
+}
\ No newline at end of file
@@ -0,0 +1,134 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks the {@link EntityCache} of a {@link Cacheable} model, against the
+ * {@link ScriptedDriver}.
+ */
+public class EntityCacheCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 2));
+
+		hits(factory);
+		invalidation(factory);
+		staleRead(factory);
+		copies(factory);
+	}
+
+	public static void hits(RDBMSModelFactory factory) {
+
+		Check.title("Find by id");
+
+		EntityCache cache = factory.getEntityCache();
+		cache.clear();
+
+		ScriptedDriver.answer("FROM country", country("Italia"));
+
+		Country a = factory.findById(Country.class, "IT");
+		Country b = factory.findById(Country.class, "IT");
+
+		Check.equal("queries", ScriptedDriver.statements().size(), 1);
+		Check.equal("name", b.getName(), "Italia");
+		Check.isTrue("new instance per hit", a != b);
+		Check.equal("hits", cache.getHits(), 1L);
+	}
+
+	public static void invalidation(RDBMSModelFactory factory) {
+
+		Check.title("Save");
+
+		factory.getEntityCache().clear();
+
+		ScriptedDriver.answer("FROM country", country("Italia"));
+
+		Country c = factory.findById(Country.class, "IT");
+		c.setName("Italy");
+		c.save();
+
+		ScriptedDriver.answer("FROM country", country("Italy"));
+
+		Check.equal("name", factory.findById(Country.class, "IT").getName(),
+			"Italy");
+		Check.equal("queries", ScriptedDriver.count("FROM country"), 2);
+
+		ScriptedDriver.statements();
+	}
+
+	public static void staleRead(final RDBMSModelFactory factory) {
+
+		Check.title("Save while reading");
+
+		final EntityCache cache = factory.getEntityCache();
+		cache.clear();
+
+		/* a save that commits after the find read the old row */
+		ScriptedDriver.answer("FROM country", new Runnable() {
+			public void run() { cache.evict("country", "IT"); }
+		}, country("Italia"));
+
+		Check.equal("name", factory.findById(Country.class, "IT").getName(),
+			"Italia");
+		Check.equal("cached", cache.size(), 0);
+
+		ScriptedDriver.answer("FROM country", country("Italy"));
+
+		Check.equal("name after", factory.findById(Country.class, "IT").
+			getName(), "Italy");
+		Check.equal("cached after", cache.size(), 1);
+
+		ScriptedDriver.statements();
+	}
+
+	public static void copies(RDBMSModelFactory factory) throws SQLException {
+
+		Check.title("Mutable values");
+
+		factory.getEntityCache().clear();
+
+		ScriptedDriver.answer("FROM country", country("Italia"));
+
+		Country a = factory.findById(Country.class, "IT");
+		long independence = a.getIndependence().getTime();
+
+		/* changed in place, not saved */
+		a.getIndependence().setTime(0);
+		a.getFlag().setBytes(1, new byte[] {0});
+
+		Country b = factory.findById(Country.class, "IT");
+
+		Check.equal("queries", ScriptedDriver.statements().size(), 1);
+		Check.equal("independence", b.getIndependence().getTime(),
+			independence);
+		Check.equal("flag", b.getFlag().getBytes(1, 3)[0], (byte) 'r');
+
+		b.getIndependence().setTime(0);
+
+		Country c = factory.findById(Country.class, "IT");
+		Check.equal("independence again", c.getIndependence().getTime(),
+			independence);
+
+		/* the deferred values are read by id, with a handle each */
+		Check.isTrue("history handles", b.getHistory() != c.getHistory());
+
+		ScriptedDriver.answer("FROM country", ScriptedDriver.row(
+			"Country.History", "Rome"));
+
+		Clob history = c.getHistory();
+		Check.equal("history", history.getSubString(1, 4), "Rome");
+	}
+
+	private static Map<String, Object> country(String name) {
+
+		return ScriptedDriver.row("Country.Code", "IT", "Country.Name", name,
+			"Country.Independence", Timestamp.valueOf("1861-03-17 00:00:00"),
+			"Country.Flag", new byte[] {'r', 'g', 'b'});
+	}
+}
@@ -0,0 +1,108 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks a find including several connections of an inheriting model,
+ * against the {@link ScriptedDriver}: the connections are fetched
+ * concurrently, after the partially loaded instances are completed.
+ */
+public class IncludeCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", ""));
+		factory.setEntityCache(null);
+
+		Check.title("Student, include Corporations and WebService");
+
+		/* the workers start in a different order every time */
+		for (int i = 0; i < 20; i++) include(factory);
+	}
+
+	public static void include(RDBMSModelFactory factory) {
+
+		/* Person and Account aren't joined: the students are partial */
+		ScriptedDriver.answer("FROM student WHERE",
+			ScriptedDriver.row("Student.StudentId", 1, "Student.Avg", 28.0,
+				"Student.Department", "CS", "Student.PersonId", 10,
+				"Student.AccountEmail", "ann@mail"),
+			ScriptedDriver.row("Student.StudentId", 2, "Student.Avg", 29.0,
+				"Student.Department", "CS", "Student.PersonId", 11,
+				"Student.AccountEmail", "bob@mail"));
+
+		ScriptedDriver.answer("LEFT JOIN stage",
+			corporation(student(1, 10, "Ann", "ann@mail", "mail"), 7, "Acme"),
+			corporation(student(1, 10, "Ann", "ann@mail", "mail"), 8, "Init"),
+			corporation(student(2, 11, "Bob", "bob@mail", "news"), 7, "Acme"));
+
+		ScriptedDriver.answer("Student.StudentId IN",
+			student(1, 10, "Ann", "ann@mail", "mail"),
+			student(2, 11, "Bob", "bob@mail", "news"));
+
+		ScriptedDriver.answer("FROM webservice",
+			ScriptedDriver.row("WebService.Name", "mail",
+				"WebService.HostName", "mail.host"),
+			ScriptedDriver.row("WebService.Name", "news",
+				"WebService.HostName", "news.host"));
+
+		Student[] students = new Finder<Student>(Student.class, factory).
+			whereGt("Avg", 27).include("Corporations").include("WebService").
+			all();
+
+		String loader = ScriptedDriver.thread("INNER JOIN account ON " +
+			"Account.Email = Student.AccountEmail WHERE Student.StudentId IN");
+		List<String> statements = ScriptedDriver.statements();
+
+		int loads = 0;
+
+		for (String s : statements)
+			if (s.contains("Student.StudentId IN") && !s.contains("stage"))
+				loads++;
+
+		Check.equal("statements", statements.size(), 4);
+		Check.equal("loads", loads, 1);
+		Check.isTrue("loaded before the includes",
+			statements.get(1).contains("Student.StudentId IN"));
+		Check.equal("loaded by", loader, Thread.currentThread().getName());
+
+		Check.equal("students", students.length, 2);
+
+		for (Student s : students) {
+			boolean ann = s.getStudentId() == 1;
+
+			Check.equal("first name", s.getFirstName(), ann ? "Ann" : "Bob");
+			Check.equal("web service", s.getWebService().getHostName(),
+				ann ? "mail.host" : "news.host");
+			Check.equal("corporations", s.getCorporations().length,
+				ann ? 2 : 1);
+		}
+
+		Check.equal("statements after", ScriptedDriver.statements().size(), 0);
+	}
+
+	private static Map<String, Object> student(int id, int person,
+	String name, String email, String service) {
+
+		return ScriptedDriver.row("Student.StudentId", id, "Student.Avg", 28.0,
+			"Student.Department", "CS", "Student.PersonId", person,
+			"Student.AccountEmail", email, "Person.Id", person,
+			"Person.FirstName", name, "Person.LastName", "Doe", "Person.Age", 22,
+			"Person.Employer", null, "Person.ManagedCorporation", null,
+			"Account.Email", email, "Account.Password", "secret",
+			"Account.WebService", service);
+	}
+
+	private static Map<String, Object> corporation(Map<String, Object> row,
+	int id, String name) {
+
+		row.putAll(ScriptedDriver.row("Corporation.CorporateId", id,
+			"Corporation.Name", name));
+		return row;
+	}
+}
@@ -0,0 +1,115 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Checks the iteration of the results from a cursor, against the
+ * {@link ScriptedDriver} that streams the rows like MySQL.
+ */
+public class IteratorCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 2));
+		factory.setEntityCache(null);
+
+		lazyLoads(factory);
+		transaction(factory);
+		early(factory);
+	}
+
+	public static void lazyLoads(RDBMSModelFactory factory) {
+
+		Check.title("Lazy loads while streaming");
+
+		script();
+
+		final List<String> employers = new ArrayList<String>();
+
+		new Finder<Person>(Person.class, factory).forEach(
+			new Consumer<Person>() {
+				public void accept(Person p) {
+					employers.add(p.getEmployer().getName());
+				}
+			});
+
+		Check.equal("employers", employers, Arrays.asList("Acme", "Init"));
+		Check.equal("borrowed", factory.getConnectionPool().borrowedCount(), 0);
+
+		ScriptedDriver.statements();
+	}
+
+	public static void transaction(final RDBMSModelFactory factory)
+	throws SQLException {
+
+		Check.title("Lazy loads while iterating in a transaction");
+
+		script();
+
+		List<String> employers = new Transaction<List<String>>(factory) {
+			public List<String> run() {
+
+				List<String> back = new ArrayList<String>();
+				ModelIterator<Person> i =
+					new Finder<Person>(Person.class, factory).iterator();
+
+				try {
+					while (i.hasNext()) back.add(i.next().getEmployer().getName());
+				} finally { i.close(); }
+
+				return back;
+			}
+		}.execute();
+
+		Check.equal("employers", employers, Arrays.asList("Acme", "Init"));
+		Check.equal("committed", ScriptedDriver.count("COMMIT"), 1);
+
+		ScriptedDriver.statements();
+	}
+
+	public static void early(RDBMSModelFactory factory) {
+
+		Check.title("Stream closed before the end");
+
+		script();
+
+		Stream<Person> s = new Finder<Person>(Person.class, factory).stream();
+
+		try {
+			Check.equal("first", s.findFirst().get().getFirstName(), "Ann");
+		} finally { s.close(); }
+
+		Check.equal("borrowed", factory.getConnectionPool().borrowedCount(), 0);
+
+		ScriptedDriver.statements();
+	}
+
+	/* two persons, then their employers one at a time */
+	private static void script() {
+
+		ScriptedDriver.answer("FROM person",
+			person(1, "Ann", 7), person(2, "Bob", 8));
+
+		ScriptedDriver.answer("FROM corporation",
+			ScriptedDriver.row("Corporation.CorporateId", 7,
+				"Corporation.Name", "Acme"));
+		ScriptedDriver.answer("FROM corporation",
+			ScriptedDriver.row("Corporation.CorporateId", 8,
+				"Corporation.Name", "Init"));
+	}
+
+	private static Map<String, Object> person(int id, String name,
+	int employer) {
+
+		return ScriptedDriver.row("Person.Id", id, "Person.FirstName", name,
+			"Person.LastName", "Doe", "Person.Age", 30,
+			"Person.Employer", employer, "Person.ManagedCorporation", null);
+	}
+}
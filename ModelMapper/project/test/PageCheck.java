@@ -0,0 +1,126 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks the keyset pagination of the {@link Finder}, against the
+ * {@link ScriptedDriver}: every page is read after (or before) the key
+ * of the last row of the previous one, the id breaking the ties.
+ */
+public class PageCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 1));
+		factory.setEntityCache(null);
+
+		pages(factory);
+		before(factory);
+		descending(factory);
+	}
+
+	public static void pages(RDBMSModelFactory factory) {
+
+		Check.title("Pages, by age ascending");
+
+		ScriptedDriver.answer(person(3, "Ann", 20), person(1, "Bob", 21));
+		ScriptedDriver.answer(person(2, "Carl", 21), person(5, "Dan", 30));
+		ScriptedDriver.answer(person(4, "Eve", 40));
+
+		PageIterator<Person> i = new Finder<Person>(Person.class, factory).
+			whereGt("Age", 18).orderByAsc("Age").pages(2);
+
+		List<String> names = new ArrayList<String>();
+		List<String> keys = new ArrayList<String>();
+
+		while (i.hasNext()) {
+			for (Person p : i.next()) names.add(p.getFirstName());
+			keys.add(Arrays.toString(i.getKey()));
+		}
+
+		Check.equal("names", names,
+			Arrays.asList("Ann", "Bob", "Carl", "Dan", "Eve"));
+		Check.equal("keys", keys,
+			Arrays.asList("[21, 1]", "[30, 5]", "[40, 4]"));
+
+		/* the last page was shorter: no query for an empty one */
+		Check.equal("statements", ScriptedDriver.statements(), Arrays.asList(
+			"SELECT Person.* FROM person WHERE  ( Age  >  ? ) ORDER BY Age " +
+			"ASC, Person.Id ASC  LIMIT  2 [18]",
+			"SELECT Person.* FROM person WHERE  ( Age  >  ? ) and ((Age, " +
+			"Person.Id) > (?, ?)) ORDER BY Age ASC, Person.Id ASC  LIMIT  2 " +
+			"[18, 21, 1]",
+			"SELECT Person.* FROM person WHERE  ( Age  >  ? ) and ((Age, " +
+			"Person.Id) > (?, ?)) ORDER BY Age ASC, Person.Id ASC  LIMIT  2 " +
+			"[18, 30, 5]"));
+	}
+
+	public static void before(RDBMSModelFactory factory) {
+
+		Check.title("Page before");
+
+		/* read in reverse order, returned in the order of the finder */
+		ScriptedDriver.answer(person(5, "Dan", 30), person(2, "Carl", 21));
+
+		Person[] page = new Finder<Person>(Person.class, factory).
+			whereGt("Age", 18).orderByAsc("Age").
+			pageBefore(new Object[] {40, 4}, 2);
+
+		Check.equal("names", page[0].getFirstName() + " " +
+			page[1].getFirstName(), "Carl Dan");
+		Check.equal("statement", ScriptedDriver.statements().get(0),
+			"SELECT Person.* FROM person WHERE  ( Age  >  ? ) and ((Age, " +
+			"Person.Id) < (?, ?)) ORDER BY Age DESC, Person.Id DESC  LIMIT  2 " +
+			"[18, 40, 4]");
+	}
+
+	public static void descending(RDBMSModelFactory factory) {
+
+		Check.title("Descending");
+
+		ScriptedDriver.answer(person(2, "Carl", 21), person(1, "Bob", 21));
+
+		Person[] after = new Finder<Person>(Person.class, factory).
+			orderByDesc("Age").pageAfter(new Object[] {30, 5}, 2);
+
+		/* read ascending: the rows after Carl are Dan and Eve */
+		ScriptedDriver.answer(person(5, "Dan", 30), person(4, "Eve", 40));
+
+		/* the page before the second: back to the first one */
+		Person[] before = new Finder<Person>(Person.class, factory).
+			orderByDesc("Age").pageBefore(after[0], 2);
+
+		Check.equal("after", after[0].getFirstName() + " " +
+			after[1].getFirstName(), "Carl Bob");
+		Check.equal("before", before[0].getFirstName() + " " +
+			before[1].getFirstName(), "Eve Dan");
+
+		List<String> statements = ScriptedDriver.statements();
+
+		Check.equal("after statement", statements.get(0),
+			"SELECT Person.* FROM person WHERE  ((Age, Person.Id) < (?, ?)) " +
+			"ORDER BY Age DESC, Person.Id DESC  LIMIT  2 [30, 5]");
+		Check.equal("before statement", statements.get(1),
+			"SELECT Person.* FROM person WHERE  ((Age, Person.Id) > (?, ?)) " +
+			"ORDER BY Age ASC, Person.Id ASC  LIMIT  2 [21, 2]");
+
+		/* by id only: the default order is by id descending */
+		new Finder<Person>(Person.class, factory).pageAfter(new Object[] {9}, 5);
+
+		Check.equal("by id", ScriptedDriver.statements().get(0),
+			"SELECT Person.* FROM person WHERE  (Person.Id < ?) ORDER BY " +
+			"Person.Id DESC  LIMIT  5 [9]");
+	}
+
+	private static Map<String, Object> person(int id, String name, int age) {
+
+		return ScriptedDriver.row("Person.Id", id, "Person.FirstName", name,
+			"Person.LastName", "Doe", "Person.Age", age,
+			"Person.Employer", null, "Person.ManagedCorporation", null);
+	}
+}
@@ -0,0 +1,84 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks the cached query plans and the padded <code>IN</code> lists,
+ * against the {@link ScriptedDriver}: the finds of the same shape run the
+ * same sql, so its prepared statement is reused.
+ */
+public class PlanCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 1));
+		factory.setEntityCache(null);
+
+		shapes(factory);
+		padding(factory);
+
+		/* the plans evicted are compiled again */
+		factory.setPlanCacheSize(1);
+		padding(factory);
+	}
+
+	public static void shapes(RDBMSModelFactory factory) {
+
+		Check.title("Finds of the same shape");
+
+		ConnectionPool pool = factory.getConnectionPool();
+		long hits = pool.getStatementCacheHits();
+
+		new Finder<Person>(Person.class, factory).where("Age", 30).all();
+		new Finder<Person>(Person.class, factory).where("Age", 31).all();
+
+		List<String> statements = ScriptedDriver.statements();
+
+		Check.equal("first", statements.get(0), "SELECT Person.* FROM " +
+			"person WHERE  ( Age  =  ? ) ORDER BY Person.Id DESC  [30]");
+		Check.equal("second", statements.get(1), "SELECT Person.* FROM " +
+			"person WHERE  ( Age  =  ? ) ORDER BY Person.Id DESC  [31]");
+		Check.equal("statement reused", pool.getStatementCacheHits() - hits,
+			1L);
+	}
+
+	public static void padding(RDBMSModelFactory factory) {
+
+		Check.title("IN lists");
+
+		ConnectionPool pool = factory.getConnectionPool();
+
+		ScriptedDriver.answer("FROM person",
+			person(1, 7), person(2, 8), person(3, 9));
+		new Finder<Person>(Person.class, factory).all()[0].getEmployer();
+
+		ScriptedDriver.answer("FROM person",
+			person(1, 7), person(2, 8), person(3, 9), person(4, 10));
+		long hits = pool.getStatementCacheHits();
+		new Finder<Person>(Person.class, factory).all()[0].getEmployer();
+
+		List<String> statements = ScriptedDriver.statements();
+
+		/* 3 ids: padded to 4 repeating the last one */
+		Check.equal("3 ids", statements.get(1), "SELECT Corporation.* FROM " +
+			"corporation WHERE Corporation.CorporateId IN (?, ?, ?, ?) " +
+			"[7, 8, 9, 9]");
+		Check.equal("4 ids", statements.get(3), "SELECT Corporation.* FROM " +
+			"corporation WHERE Corporation.CorporateId IN (?, ?, ?, ?) " +
+			"[7, 8, 9, 10]");
+		Check.equal("statements reused", pool.getStatementCacheHits() - hits,
+			2L);
+	}
+
+	private static Map<String, Object> person(int id, int employer) {
+
+		return ScriptedDriver.row("Person.Id", id, "Person.FirstName", "Ann",
+			"Person.LastName", "Doe", "Person.Age", 30,
+			"Person.Employer", employer, "Person.ManagedCorporation", null);
+	}
+}
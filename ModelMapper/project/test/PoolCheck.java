@@ -0,0 +1,162 @@
+import modelmapper.*;
+import modelmapper.exception.*;
+
+import java.sql.*;
+
+/**
+ * Checks the {@link ConnectionPool} against the {@link ScriptedDriver}:
+ * <pre>java -cp ../../bin/modelmapper.jar:. PoolCheck</pre>
+ */
+public class PoolCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		failures();
+
+		ScriptedDriver.reset();
+		ConnectionPool pool =
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 2);
+
+		try {
+			exhaustion(pool);
+			reset(pool);
+			validation(pool);
+			leaks(pool);
+		} finally { pool.close(); }
+
+		Check.equal("open after close", ScriptedDriver.openConnections(), 0);
+	}
+
+	public static void exhaustion(ConnectionPool pool) throws SQLException {
+
+		Check.title("Exhaustion [maxSize 2, borrowTimeout 100ms]");
+
+		Connection a = pool.borrow(), b = pool.borrow();
+		Check.equal("borrowed", pool.borrowedCount(), 2);
+
+		pool.setBorrowTimeout(100);
+
+		boolean exhausted = false;
+
+		try { pool.borrow();
+		} catch (ModelRuntimeException e) { exhausted = true; }
+
+		Check.isTrue("third borrow refused", exhausted);
+
+		a.close();
+		a.close();
+
+		boolean refused = false;
+
+		try { a.getAutoCommit();
+		} catch (SQLException e) { refused = true; }
+
+		Check.isTrue("closed connection refused", refused);
+
+		b.close();
+		Check.equal("borrowed after close", pool.borrowedCount(), 0);
+	}
+
+	public static void reset(ConnectionPool pool) throws SQLException {
+
+		Check.title("Reset on return");
+
+		Connection c = pool.borrow();
+
+		int isolation = c.getTransactionIsolation();
+		boolean readOnly = c.isReadOnly();
+		String catalog = c.getCatalog();
+
+		c.setAutoCommit(false);
+		c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+		c.setReadOnly(!readOnly);
+		c.setCatalog("other");
+		c.close();
+
+		/* the most recently used connection is borrowed first */
+		c = pool.borrow();
+
+		Check.equal("autocommit", c.getAutoCommit(), true);
+		Check.equal("isolation", c.getTransactionIsolation(), isolation);
+		Check.equal("read only", c.isReadOnly(), readOnly);
+		Check.equal("catalog", c.getCatalog(), catalog);
+
+		c.close();
+	}
+
+	public static void validation(ConnectionPool pool) throws SQLException {
+
+		Check.title("Validation on borrow");
+
+		Connection c = pool.borrow();
+		Connection physical = c.unwrap(Connection.class);
+		c.close();
+
+		/* a connection just returned isn't validated again */
+		ScriptedDriver.invalid = true;
+
+		c = pool.borrow();
+		Check.same("recently used kept", c.unwrap(Connection.class), physical);
+		c.close();
+
+		pool.setValidationInterval(0);
+
+		c = pool.borrow();
+		Check.isTrue("invalid replaced", c.unwrap(Connection.class) != physical);
+		Check.equal("physical closed", physical.isClosed(), true);
+
+		ScriptedDriver.invalid = false;
+		c.close();
+	}
+
+	public static void leaks(ConnectionPool pool) throws SQLException {
+
+		Check.title("Leak detection [leakThreshold 1ms]");
+
+		long before = pool.getLeakCount();
+
+		/* off by default */
+		Connection c = pool.borrow();
+
+		try { Thread.sleep(10); } catch (InterruptedException e) { }
+
+		pool.maintain();
+		Check.equal("leaks reported, disabled", pool.getLeakCount(), before);
+		c.close();
+
+		pool.setLeakThreshold(1);
+		c = pool.borrow();
+
+		try { Thread.sleep(10); } catch (InterruptedException e) { }
+
+		pool.maintain();
+		pool.maintain();
+
+		Check.equal("leaks reported", pool.getLeakCount() - before, 1L);
+		c.close();
+	}
+
+	public static void failures() throws SQLException {
+
+		Check.title("Failures while opening");
+
+		ScriptedDriver.reset();
+		ScriptedDriver.broken = true;
+
+		boolean failed = false;
+
+		try { new ConnectionPool(ScriptedDriver.URL, "user", "", 2, 2);
+		} catch (ModelRuntimeException e) { failed = true; }
+
+		Check.isTrue("pool refused", failed);
+		Check.equal("open connections", ScriptedDriver.openConnections(), 0);
+
+		boolean thread = false;
+
+		for (Thread t : Thread.getAllStackTraces().keySet())
+			if (t.getName().equals("modelmapper-pool") && t.isAlive())
+				thread = true;
+
+		Check.equal("maintenance thread", thread, false);
+	}
+}
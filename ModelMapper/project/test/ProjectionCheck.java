@@ -0,0 +1,92 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks the column projections of {@link Finder#select} and the loading
+ * of the partially loaded instances, against the {@link ScriptedDriver}.
+ */
+public class ProjectionCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 1));
+		factory.setEntityCache(null);
+
+		projection(factory);
+		inheritance(factory);
+	}
+
+	public static void projection(RDBMSModelFactory factory) {
+
+		Check.title("Select FirstName");
+
+		ScriptedDriver.answer(
+			ScriptedDriver.row("Person.Id", 1, "Person.FirstName", "Ann"),
+			ScriptedDriver.row("Person.Id", 2, "Person.FirstName", "Bob"));
+
+		Person[] persons = new Finder<Person>(Person.class, factory).
+			select("FirstName").all();
+
+		Check.equal("first name", persons[0].getFirstName(), "Ann");
+		Check.equal("selected", ScriptedDriver.statements().get(0),
+			"SELECT Person.Id,Person.FirstName FROM person WHERE  true  " +
+			"ORDER BY Person.Id DESC  []");
+
+		/* the row changed since: the fields read are kept */
+		ScriptedDriver.answer(person(1, "Anna", "Doe"), person(2, "Bobby", "Roe"));
+
+		Check.equal("last name", persons[0].getLastName(), "Doe");
+		Check.equal("first name kept", persons[0].getFirstName(), "Ann");
+
+		/* the other instances of the find are loaded together */
+		Check.equal("sibling", persons[1].getLastName(), "Roe");
+		Check.equal("loaded", ScriptedDriver.statements(), Arrays.asList(
+			"SELECT Person.* FROM person WHERE Person.Id IN (?, ?) [1, 2]"));
+	}
+
+	public static void inheritance(RDBMSModelFactory factory) {
+
+		Check.title("Select FirstName of a Student");
+
+		/* only the super table owning the field is joined */
+		ScriptedDriver.answer(ScriptedDriver.row("Person.Id", 10,
+			"Person.FirstName", "Ann", "Student.StudentId", 1,
+			"Student.PersonId", 10, "Student.AccountEmail", "ann@mail"));
+
+		Student s = new Finder<Student>(Student.class, factory).
+			select("FirstName").all()[0];
+
+		Check.equal("first name", s.getFirstName(), "Ann");
+		Check.equal("selected", ScriptedDriver.statements().get(0),
+			"SELECT Person.Id,Person.FirstName,Student.StudentId," +
+			"Student.PersonId,Student.AccountEmail FROM student INNER JOIN " +
+			"person ON Person.Id = Student.PersonId WHERE  true  ORDER BY " +
+			"Student.StudentId DESC  []");
+
+		Map<String, Object> row = person(10, "Ann", "Doe");
+		row.putAll(ScriptedDriver.row("Student.StudentId", 1, "Student.Avg",
+			28.0, "Student.Department", "CS", "Student.PersonId", 10,
+			"Student.AccountEmail", "ann@mail", "Account.Email", "ann@mail",
+			"Account.Password", "secret", "Account.WebService", null));
+		ScriptedDriver.answer(row);
+
+		/* a field of another super table: the whole instance is loaded */
+		Check.equal("password", s.getPassword(), "secret");
+		Check.equal("department", s.getDepartment(), "CS");
+		Check.equal("loads", ScriptedDriver.statements().size(), 1);
+	}
+
+	private static Map<String, Object> person(int id, String first,
+	String last) {
+
+		return ScriptedDriver.row("Person.Id", id, "Person.FirstName", first,
+			"Person.LastName", last, "Person.Age", 30,
+			"Person.Employer", null, "Person.ManagedCorporation", null);
+	}
+}
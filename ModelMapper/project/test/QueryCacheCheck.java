@@ -0,0 +1,134 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Checks the {@link QueryCache} of the cached finders and its
+ * invalidation, against the {@link ScriptedDriver}.
+ */
+public class QueryCacheCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 2));
+		factory.setEntityCache(null);
+
+		hits(factory);
+		invalidation(factory);
+		staleRead(factory);
+		transaction(factory);
+	}
+
+	public static void hits(RDBMSModelFactory factory) {
+
+		Check.title("Hits");
+
+		QueryCache cache = factory.getQueryCache();
+
+		ScriptedDriver.answer(person(1, "Ann"), person(2, "Bob"));
+		ScriptedDriver.answer(person(3, "Carl"));
+
+		Person[] a = adults(factory, 18);
+		Person[] b = adults(factory, 18);
+		Person[] c = adults(factory, 21);
+
+		Check.equal("queries", ScriptedDriver.statements().size(), 2);
+		Check.equal("hits", cache.getHits(), 1L);
+		Check.equal("results", b.length + " " + b[1].getFirstName(), "2 Bob");
+		Check.isTrue("new instances", a[0] != b[0]);
+		Check.equal("by parameters", c[0].getFirstName(), "Carl");
+		Check.equal("entries", cache.size(), 2);
+	}
+
+	public static void invalidation(RDBMSModelFactory factory) {
+
+		Check.title("Invalidation");
+
+		QueryCache cache = factory.getQueryCache();
+
+		/* another table: the results of person are kept */
+		Corporation acme = factory.create(Corporation.class);
+		acme.setName("Acme");
+		acme.save();
+
+		Check.equal("entries", cache.size(), 2);
+
+		Person ann = adults(factory, 18)[0];
+		ann.setAge(40);
+		ann.save();
+
+		Check.equal("entries after save", cache.size(), 0);
+
+		ScriptedDriver.statements();
+		ScriptedDriver.answer(person(2, "Bob"));
+
+		Check.equal("read again", adults(factory, 18).length, 1);
+		Check.equal("queries", ScriptedDriver.count("FROM person"), 1);
+
+		ScriptedDriver.statements();
+	}
+
+	public static void staleRead(final RDBMSModelFactory factory) {
+
+		Check.title("Save while reading");
+
+		final QueryCache cache = factory.getQueryCache();
+		cache.clear();
+
+		/* a save that commits after the find read the old rows */
+		ScriptedDriver.answer("FROM person", new Runnable() {
+			public void run() {
+				Person p = factory.create(Person.class);
+				p.setFirstName("Dan");
+				p.save();
+			}
+		}, person(1, "Ann"));
+
+		adults(factory, 18);
+		Check.equal("entries", cache.size(), 0);
+
+		ScriptedDriver.answer(person(1, "Ann"));
+
+		adults(factory, 18);
+		Check.equal("entries after", cache.size(), 1);
+
+		ScriptedDriver.statements();
+	}
+
+	public static void transaction(final RDBMSModelFactory factory)
+	throws SQLException {
+
+		Check.title("Inside a transaction");
+
+		QueryCache cache = factory.getQueryCache();
+		cache.clear();
+
+		ScriptedDriver.answer(person(1, "Ann"));
+
+		new Transaction<Object>(factory) {
+			public Object run() { return adults(factory, 18); }
+		}.execute();
+
+		Check.equal("entries", cache.size(), 0);
+
+		ScriptedDriver.statements();
+	}
+
+	private static Person[] adults(RDBMSModelFactory factory, int age) {
+		return new Finder<Person>(Person.class, factory).whereGt("Age", age).
+			cached(Duration.ofMinutes(1)).all();
+	}
+
+	private static Map<String, Object> person(int id, String name) {
+
+		return ScriptedDriver.row("Person.Id", id, "Person.FirstName", name,
+			"Person.LastName", "Doe", "Person.Age", 30,
+			"Person.Employer", null, "Person.ManagedCorporation", null);
+	}
+}
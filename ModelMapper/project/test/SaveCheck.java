@@ -0,0 +1,114 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks the batched save of the {@link MySQLModelFactory}, against the
+ * {@link ScriptedDriver} (the generated keys start from 100).
+ */
+public class SaveCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 1));
+		factory.setBatchSize(2);
+
+		Corporation[] corporations = inserts(factory);
+		updates(factory, corporations);
+	}
+
+	public static Corporation[] inserts(RDBMSModelFactory factory) {
+
+		Check.title("Inserts [batchSize 2]");
+
+		Corporation[] c = new Corporation[3];
+
+		for (int i = 0; i < c.length; i++) {
+			c[i] = factory.create(Corporation.class);
+			c[i].setName("Corporation " + i);
+		}
+
+		Student ann = student(factory, "Ann", "ann@mail");
+		Student bob = student(factory, "Bob", "bob@mail");
+
+		factory.saveAll(c[0], c[1], c[2], ann, bob);
+
+		List<String> statements = ScriptedDriver.statements();
+
+		/* a multi-row INSERT per batch and table, in one transaction */
+		Check.equal("statements", statements.size(), 6);
+		Check.isTrue("corporations 1-2", statements.get(0).startsWith(
+			"INSERT INTO Corporation (Name,CreatedAt,UpdatedAt) VALUES " +
+			"(?,?,?),(?,?,?) [Corporation 0"));
+		Check.isTrue("corporation 3", statements.get(1).startsWith(
+			"INSERT INTO Corporation (Name,CreatedAt,UpdatedAt) VALUES " +
+			"(?,?,?) [Corporation 2"));
+		Check.isTrue("persons", statements.get(2).startsWith(
+			"INSERT INTO Person "));
+		Check.isTrue("accounts", statements.get(3).startsWith(
+			"INSERT INTO Account "));
+		Check.isTrue("students", statements.get(4).startsWith(
+			"INSERT INTO Student "));
+		Check.equal("commit", statements.get(5), "COMMIT");
+
+		/* the generated keys, in order */
+		Check.equal("corporation ids", Arrays.asList(c[0].getCorporateId(),
+			c[1].getCorporateId(), c[2].getCorporateId()),
+			Arrays.asList(100, 101, 102));
+		Check.equal("person ids", Arrays.asList(ann.getId(), bob.getId()),
+			Arrays.asList(103, 104));
+		Check.equal("student ids", Arrays.asList(ann.getStudentId(),
+			bob.getStudentId()), Arrays.asList(105, 106));
+
+		/* the subclass rows reference the super rows just inserted */
+		Check.isTrue("student keys", statements.get(4).contains(
+			"103, ann@mail") && statements.get(4).contains("104, bob@mail"));
+
+		Check.isTrue("saved", !ann.newRecord() && !c[2].newRecord());
+
+		return c;
+	}
+
+	public static void updates(RDBMSModelFactory factory, Corporation[] c) {
+
+		Check.title("Updates");
+
+		c[0].setName("Acme");
+		c[1].setName("Init");
+
+		/* the unchanged one isn't written */
+		factory.saveAll(c);
+
+		List<String> statements = ScriptedDriver.statements();
+
+		Check.equal("statements", statements.size(), 4);
+		Check.isTrue("update 1", statements.get(0).startsWith(
+			"batch UPDATE Corporation SET Name = ?") &&
+			statements.get(0).endsWith(", 100]"));
+		Check.isTrue("update 2", statements.get(1).startsWith(
+			"batch UPDATE Corporation SET Name = ?") &&
+			statements.get(1).endsWith(", 101]"));
+		Check.equal("batch", statements.get(2), "executeBatch");
+		Check.equal("commit", statements.get(3), "COMMIT");
+
+		/* nothing changed: nothing to write */
+		factory.saveAll(c);
+		Check.equal("statements again", ScriptedDriver.statements().size(), 0);
+	}
+
+	private static Student student(RDBMSModelFactory factory, String name,
+	String email) {
+
+		Student s = factory.create(Student.class);
+		s.setFirstName(name);
+		s.setEmail(email);
+		s.setAvg(28);
+
+		return s;
+	}
+}
@@ -0,0 +1,512 @@
+import java.io.*;
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory JDBC driver for the checks, registered for the
+ * <code>jdbc:scripted</code> urls: the queries are answered with the rows
+ * scripted by {@link #answer(String, Map[])} instead of a database, and
+ * every statement is recorded so that a check can verify what the mapper
+ * sent. The result sets read the metadata from the labels of the rows
+ * (<code>Table.Column</code>), as the mapper does.
+ * <p>A statement with the fetch size <code>Integer.MIN_VALUE</code> streams
+ * its result set like MySQL Connector/J: until the result set is exhausted
+ * or closed any other statement on the same connection fails.</p>
+ */
+public class ScriptedDriver implements Driver {
+
+	public static final String URL = "jdbc:scripted";
+
+	private static final List<String> log =
+		Collections.synchronizedList(new ArrayList<String>());
+
+	/* the thread that executed each statement of the log */
+	private static final List<String> threads = new ArrayList<String>();
+
+	private static final List<Script> scripts = new LinkedList<Script>();
+
+	private static int key = 100;
+	private static int opened, closed;
+
+	/** If set, <code>Connection.isValid</code> returns <code>false</code> */
+	public static volatile boolean invalid;
+
+	/** If set, the connections fail on the first call */
+	public static volatile boolean broken;
+
+	private static boolean registered;
+
+	/**
+	 * Registers the driver in the {@link DriverManager} and clears the
+	 * scripts, the log and the counters of a previous check. The generated
+	 * keys start again from 100.
+	 */
+	public static synchronized void reset() throws SQLException {
+
+		if (!registered) DriverManager.registerDriver(new ScriptedDriver());
+		registered = true;
+
+		synchronized (scripts) { scripts.clear(); }
+		statements();
+
+		opened = closed = 0;
+		key = 100;
+		invalid = broken = false;
+	}
+
+	/**
+	 * Returns a row, from pairs of label (<code>Table.Column</code>) and
+	 * value.
+	 */
+	public static Map<String, Object> row(Object... pairs) {
+
+		Map<String, Object> row = new LinkedHashMap<String, Object>();
+
+		for (int i = 0; i < pairs.length; i += 2)
+			row.put((String) pairs[i], pairs[i + 1]);
+
+		return row;
+	}
+
+	/**
+	 * The next query whose sql contains <code>fragment</code> (any query
+	 * if <code>null</code>) returns <code>rows</code>. The scripts are used
+	 * once, in order; a query without a script returns no rows.
+	 */
+	public static void answer(String fragment, Map<String, Object>... rows) {
+		answer(fragment, null, rows);
+	}
+
+	/**
+	 * As {@link #answer(String, Map[])}, running <code>action</code> in
+	 * the thread that executes the query, before the rows are returned
+	 * (e.g. a concurrent write).
+	 */
+	public static void answer(String fragment, Runnable action,
+	Map<String, Object>... rows) {
+		synchronized (scripts) {
+			scripts.add(new Script(fragment, action, Arrays.asList(rows)));
+		}
+	}
+
+	/** The next query returns <code>rows</code> */
+	public static void answer(Map<String, Object>... rows) {
+		answer((String) null, rows);
+	}
+
+	/** Returns and forgets the statements executed so far */
+	public static List<String> statements() {
+		synchronized (log) {
+			List<String> back = new ArrayList<String>(log);
+			log.clear();
+			threads.clear();
+			return back;
+		}
+	}
+
+	/** Counts the statements executed so far containing <code>fragment</code> */
+	public static int count(String fragment) {
+
+		int count = 0;
+
+		synchronized (log) {
+			for (String s : log) if (s.contains(fragment)) count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the name of the thread that executed the first statement
+	 * containing <code>fragment</code>, <code>null</code> if none did.
+	 */
+	public static String thread(String fragment) {
+		synchronized (log) {
+			for (int i = 0; i < log.size(); i++)
+				if (log.get(i).contains(fragment)) return threads.get(i);
+		}
+
+		return null;
+	}
+
+	/** Returns the number of physical connections opened and not closed */
+	public static synchronized int openConnections() { return opened - closed; }
+
+	/** Prints the statements executed so far */
+	public static void dump() {
+		for (String s : statements()) System.out.println("  | " + s);
+	}
+
+	private static void record(String statement) {
+		synchronized (log) {
+			log.add(statement);
+			threads.add(Thread.currentThread().getName());
+		}
+	}
+
+	private static List<Map<String, Object>> script(String sql) {
+
+		Script script = null;
+
+		synchronized (scripts) {
+
+			for (Iterator<Script> i = scripts.iterator(); i.hasNext();) {
+				Script s = i.next();
+
+				if (s.fragment == null || sql.contains(s.fragment)) {
+					i.remove();
+					script = s;
+					break;
+				}
+			}
+		}
+
+		if (script == null) return new ArrayList<Map<String, Object>>();
+
+		if (script.action != null) script.action.run();
+		return script.rows;
+	}
+
+	private static synchronized long nextKey() { return key++; }
+
+	private static Object proxy(Class<?> type, final InvocationHandler h) {
+
+		return Proxy.newProxyInstance(ScriptedDriver.class.getClassLoader(),
+			new Class<?>[] {type}, new InvocationHandler() {
+
+			public Object invoke(Object proxy, Method m, Object[] args)
+			throws Throwable {
+
+				Object value = h.invoke(proxy, m, args);
+				Class<?> r = m.getReturnType();
+
+				/* the defaults of the primitive types */
+				if (value == null && r == boolean.class) return false;
+				if (value == null && r == int.class) return 0;
+				if (value == null && r == long.class) return 0L;
+				if (value == null && r == double.class) return 0d;
+
+				return value;
+			}
+		});
+	}
+
+	public java.sql.Connection connect(String url, Properties info)
+	throws SQLException {
+
+		if (!acceptsURL(url)) return null;
+
+		synchronized (ScriptedDriver.class) { opened++; }
+		return (java.sql.Connection)
+			proxy(java.sql.Connection.class, new ScriptedConnection());
+	}
+
+	public boolean acceptsURL(String url) { return url.startsWith(URL); }
+
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	public int getMajorVersion() { return 1; }
+	public int getMinorVersion() { return 0; }
+	public boolean jdbcCompliant() { return false; }
+
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	private static class Script {
+
+		final String fragment;
+		final Runnable action;
+		final List<Map<String, Object>> rows;
+
+		Script(String fragment, Runnable action,
+		List<Map<String, Object>> rows) {
+			this.fragment = fragment;
+			this.action = action;
+			this.rows = rows;
+		}
+	}
+
+	private static class ScriptedConnection implements InvocationHandler {
+
+		boolean autoCommit = true, readOnly, closed;
+		int isolation = java.sql.Connection.TRANSACTION_REPEATABLE_READ;
+		String catalog = "scripted";
+
+		/* the result set being streamed, if any */
+		Rows streaming;
+
+		public Object invoke(Object proxy, Method m, Object[] args)
+		throws Throwable {
+
+			String name = m.getName();
+
+			if (broken && !name.equals("close"))
+				throw new SQLException("Broken connection");
+
+			if (name.equals("close")) {
+				if (!closed) synchronized (ScriptedDriver.class) {
+					ScriptedDriver.closed++;
+				}
+				closed = true;
+				return null;
+			}
+
+			if (name.equals("isClosed")) return closed;
+			if (closed) throw new SQLException("Connection is closed");
+
+			if (name.equals("unwrap")) return proxy;
+			if (name.equals("isValid")) return !invalid;
+			if (name.equals("getAutoCommit")) return autoCommit;
+			if (name.equals("getTransactionIsolation")) return isolation;
+			if (name.equals("isReadOnly")) return readOnly;
+			if (name.equals("getCatalog")) return catalog;
+
+			if (name.equals("setAutoCommit")) autoCommit = (Boolean) args[0];
+			if (name.equals("setTransactionIsolation"))
+				isolation = (Integer) args[0];
+			if (name.equals("setReadOnly")) readOnly = (Boolean) args[0];
+			if (name.equals("setCatalog")) catalog = (String) args[0];
+
+			if (name.equals("commit")) record("COMMIT");
+			if (name.equals("rollback")) record("ROLLBACK");
+
+			if (name.equals("getMetaData"))
+				return proxy(DatabaseMetaData.class, new InvocationHandler() {
+
+					public Object invoke(Object p, Method m, Object[] a) {
+
+						/* no tables, the schema is never migrated */
+						if (ResultSet.class == m.getReturnType())
+							return rows(new ArrayList<Map<String, Object>>());
+
+						return null;
+					}
+				});
+
+			if (name.equals("prepareStatement") ||
+				name.equals("createStatement"))
+				return proxy(PreparedStatement.class,
+					new ScriptedStatement(this, args == null ? null :
+						(String) args[0]));
+
+			return null;
+		}
+
+		void check() throws SQLException {
+
+			if (streaming != null && !streaming.done)
+				throw new SQLException("Streaming result set " +
+					streaming + " is still active");
+		}
+	}
+
+	private static class ScriptedStatement implements InvocationHandler {
+
+		final ScriptedConnection connection;
+		final String sql;
+
+		final Map<Integer, Object> parameters = new TreeMap<Integer, Object>();
+		final List<String> batch = new ArrayList<String>();
+
+		int fetchSize, maxRows, queryTimeout, inserted;
+		boolean closed;
+
+		ScriptedStatement(ScriptedConnection connection, String sql) {
+			this.connection = connection;
+			this.sql = sql;
+		}
+
+		public Object invoke(Object proxy, Method m, Object[] args)
+		throws Throwable {
+
+			String name = m.getName();
+
+			if (name.equals("close")) { closed = true; return null; }
+			if (name.equals("isClosed")) return closed;
+			if (closed) throw new SQLException("Statement is closed");
+
+			if (name.startsWith("set") && args != null && args.length >= 2 &&
+				args[0] instanceof Integer) {
+				parameters.put((Integer) args[0], args[1]);
+				return null;
+			}
+
+			if (name.equals("setFetchSize")) fetchSize = (Integer) args[0];
+			if (name.equals("setMaxRows")) maxRows = (Integer) args[0];
+			if (name.equals("setQueryTimeout")) queryTimeout = (Integer) args[0];
+			if (name.equals("getFetchSize")) return fetchSize;
+			if (name.equals("getMaxRows")) return maxRows;
+			if (name.equals("getQueryTimeout")) return queryTimeout;
+
+			if (name.equals("clearParameters")) parameters.clear();
+			if (name.equals("clearBatch")) batch.clear();
+
+			if (name.equals("executeQuery")) {
+
+				connection.check();
+
+				String s = statement();
+				record(s);
+
+				Rows rows = new Rows(script(s));
+				if (fetchSize == Integer.MIN_VALUE) connection.streaming = rows;
+
+				return proxy(ResultSet.class, rows);
+			}
+
+			if (name.equals("executeUpdate") || name.equals("execute")) {
+
+				connection.check();
+
+				record(statement());
+				inserted = sql.split("\\(\\?").length - 1;
+				return name.equals("execute") ? (Object) false : 1;
+			}
+
+			if (name.equals("addBatch")) {
+				batch.add("batch " + statement());
+				return null;
+			}
+
+			if (name.equals("executeBatch")) {
+
+				connection.check();
+
+				for (String b : batch) record(b);
+				record("executeBatch");
+
+				int[] counts = new int[batch.size()];
+				Arrays.fill(counts, 1);
+
+				inserted = batch.size();
+				batch.clear();
+				return counts;
+			}
+
+			if (name.equals("getGeneratedKeys")) {
+
+				List<Map<String, Object>> keys =
+					new ArrayList<Map<String, Object>>();
+
+				for (int i = 0; i < inserted; i++)
+					keys.add(row("keys.GENERATED_KEY", nextKey()));
+
+				return rows(keys);
+			}
+
+			return null;
+		}
+
+		/* the sql followed by the parameters, then forgets the parameters */
+		private String statement() {
+
+			String s = sql + " " + parameters.values();
+			parameters.clear();
+			return s;
+		}
+	}
+
+	private static ResultSet rows(List<Map<String, Object>> rows) {
+		return (ResultSet) proxy(ResultSet.class, new Rows(rows));
+	}
+
+	private static class Rows implements InvocationHandler {
+
+		final List<Map<String, Object>> rows;
+		final List<String> labels = new ArrayList<String>();
+
+		int cursor = -1;
+		Object last;
+		boolean done;
+
+		Rows(List<Map<String, Object>> rows) {
+			this.rows = rows;
+			if (!rows.isEmpty()) labels.addAll(rows.get(0).keySet());
+		}
+
+		public Object invoke(Object proxy, Method m, Object[] args)
+		throws Throwable {
+
+			String name = m.getName();
+
+			if (name.equals("next")) {
+				done = ++cursor >= rows.size();
+				return !done;
+			}
+
+			if (name.equals("close")) { done = true; return null; }
+			if (name.equals("isClosed")) return done;
+			if (name.equals("wasNull")) return last == null;
+
+			if (name.equals("findColumn")) return column((String) args[0]);
+
+			if (name.equals("getMetaData"))
+				return proxy(ResultSetMetaData.class, new InvocationHandler() {
+
+					public Object invoke(Object p, Method m, Object[] a) {
+
+						String name = m.getName();
+						if (name.equals("getColumnCount")) return labels.size();
+
+						String[] label =
+							labels.get((Integer) a[0] - 1).split("\\.");
+
+						if (name.equals("getTableName")) return label[0];
+						if (name.equals("getColumnName") ||
+							name.equals("getColumnLabel")) return label[1];
+
+						return null;
+					}
+				});
+
+			if (!name.startsWith("get") || args == null || args.length != 1)
+				return null;
+
+			int column = args[0] instanceof Integer ?
+				(Integer) args[0] : column((String) args[0]);
+
+			Object v = last = rows.get(cursor).get(labels.get(column - 1));
+			if (v == null) return null;
+
+			if (name.equals("getInt")) return ((Number) v).intValue();
+			if (name.equals("getLong")) return ((Number) v).longValue();
+			if (name.equals("getDouble")) return ((Number) v).doubleValue();
+			if (name.equals("getString")) return v.toString();
+
+			if (name.equals("getBinaryStream"))
+				return new ByteArrayInputStream((byte[]) v);
+			if (name.equals("getAsciiStream"))
+				return new ByteArrayInputStream(((String) v).getBytes("US-ASCII"));
+			if (name.equals("getCharacterStream"))
+				return new StringReader((String) v);
+
+			if (name.equals("getBlob"))
+				return new javax.sql.rowset.serial.SerialBlob((byte[]) v);
+			if (name.equals("getClob"))
+				return new javax.sql.rowset.serial.SerialClob(
+					((String) v).toCharArray());
+
+			return v;
+		}
+
+		private int column(String label) throws SQLException {
+
+			for (int i = 0; i < labels.size(); i++) {
+				String l = labels.get(i);
+
+				if (l.equalsIgnoreCase(label) ||
+					l.substring(l.indexOf('.') + 1).equalsIgnoreCase(label))
+					return i + 1;
+			}
+
+			throw new SQLException("Column not found: " + label);
+		}
+
+		public String toString() { return "Rows#" + labels; }
+	}
+}
@@ -0,0 +1,98 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks the {@link Session} identity map, against the
+ * {@link ScriptedDriver} (the generated keys start from 100).
+ */
+public class SessionCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 1));
+		factory.setEntityCache(null);
+
+		Session s = factory.openSession();
+
+		try {
+			identity(factory, s);
+			writes(factory, s);
+		} finally { s.close(); }
+
+		closed(factory);
+	}
+
+	public static void identity(RDBMSModelFactory factory, Session s) {
+
+		Check.title("Identity");
+
+		ScriptedDriver.answer(corporation(1, "Acme"), corporation(2, "Init"));
+		ScriptedDriver.answer(corporation(2, "Init"), corporation(3, "None"));
+
+		Corporation[] a = new Finder<Corporation>(Corporation.class, factory).
+			all();
+		Corporation[] b = new Finder<Corporation>(Corporation.class, factory).
+			all();
+
+		Check.same("same row, same instance", b[0], a[1]);
+		Check.equal("session size", s.size(), 3);
+
+		/* the changes not saved yet aren't overwritten by a new read */
+		a[0].setName("Changed");
+
+		ScriptedDriver.answer(corporation(1, "Acme"));
+		Check.equal("changed", new Finder<Corporation>(Corporation.class,
+			factory).all()[0].getName(), "Changed");
+
+		/* by id: from the session, without a query */
+		ScriptedDriver.statements();
+
+		Check.same("find by id", factory.findById(Corporation.class, 1), a[0]);
+		Check.equal("queries", ScriptedDriver.statements().size(), 0);
+	}
+
+	public static void writes(RDBMSModelFactory factory, Session s) {
+
+		Check.title("Saved and deleted");
+
+		Corporation c = factory.create(Corporation.class);
+		c.setName("New");
+		c.save();
+
+		Check.same("saved", s.get(Corporation.class, c.getCorporateId()), c);
+
+		c.delete();
+		Check.equal("deleted", s.get(Corporation.class, c.getCorporateId()),
+			null);
+
+		ScriptedDriver.statements();
+	}
+
+	public static void closed(RDBMSModelFactory factory) {
+
+		Check.title("Without a session");
+
+		Check.equal("current session", factory.currentSession(), null);
+
+		ScriptedDriver.answer(corporation(1, "Acme"));
+		ScriptedDriver.answer(corporation(1, "Acme"));
+
+		Corporation a = new Finder<Corporation>(Corporation.class, factory).
+			all()[0];
+		Corporation b = new Finder<Corporation>(Corporation.class, factory).
+			all()[0];
+
+		Check.isTrue("new instances", a != b);
+	}
+
+	private static Map<String, Object> corporation(int id, String name) {
+		return ScriptedDriver.row("Corporation.CorporateId", id,
+			"Corporation.Name", name);
+	}
+}
@@ -0,0 +1,104 @@
+import modelmapper.*;
+
+import java.sql.*;
+
+/**
+ * Checks the prepared statements cached by the {@link ConnectionPool}
+ * connections, against the {@link ScriptedDriver}.
+ */
+public class StatementCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+		ConnectionPool pool =
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 1);
+
+		try {
+			reuse(pool);
+			reset(pool);
+			stale(pool);
+		} finally { pool.close(); }
+	}
+
+	public static void reuse(ConnectionPool pool) throws SQLException {
+
+		Check.title("Reuse");
+
+		long hits = pool.getStatementCacheHits();
+		Connection c = pool.borrow();
+
+		PreparedStatement a = c.prepareStatement("SELECT 1");
+		a.close();
+
+		PreparedStatement b = c.prepareStatement("SELECT 1");
+
+		/* a nested borrow of the same sql isn't shared */
+		PreparedStatement nested = c.prepareStatement("SELECT 1");
+		nested.close();
+		b.close();
+
+		Check.equal("cache hits", pool.getStatementCacheHits() - hits, 1L);
+		Check.isTrue("new proxy per borrow", a != b);
+
+		c.close();
+	}
+
+	public static void reset(ConnectionPool pool) throws SQLException {
+
+		Check.title("Reset on close");
+
+		Connection c = pool.borrow();
+
+		PreparedStatement s = c.prepareStatement("SELECT 2");
+		s.setFetchSize(Integer.MIN_VALUE);
+		s.setMaxRows(10);
+		s.setObject(1, "left over");
+		s.close();
+
+		s = c.prepareStatement("SELECT 2");
+		Check.equal("fetch size", s.getFetchSize(), 0);
+		Check.equal("max rows", s.getMaxRows(), 0);
+
+		ScriptedDriver.statements();
+		s.executeQuery().close();
+		Check.equal("parameters", ScriptedDriver.statements().get(0),
+			"SELECT 2 []");
+
+		s.close();
+		c.close();
+	}
+
+	public static void stale(ConnectionPool pool) throws SQLException {
+
+		Check.title("Stale references");
+
+		Connection c = pool.borrow();
+
+		PreparedStatement stale = c.prepareStatement("SELECT 3");
+		stale.close();
+
+		PreparedStatement s = c.prepareStatement("SELECT 3");
+		s.setObject(1, "mine");
+
+		boolean refused = false;
+
+		try { stale.setObject(1, "theirs");
+		} catch (SQLException e) { refused = true; }
+
+		Check.isTrue("returned proxy refused", refused);
+		Check.isTrue("returned proxy closed", stale.isClosed());
+		Check.isTrue("current proxy open", !s.isClosed());
+
+		/* closing it again doesn't give back the current borrow */
+		stale.close();
+
+		ScriptedDriver.statements();
+		s.executeQuery().close();
+		Check.equal("parameters", ScriptedDriver.statements().get(0),
+			"SELECT 3 [mine]");
+
+		s.close();
+		c.close();
+	}
+}
@@ -0,0 +1,77 @@
+import modelmapper.*;
+import modelmapper.provider.mysql.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks that a find of an inheriting model joins only the super tables
+ * it refers to, against the {@link ScriptedDriver}: the others are read
+ * the first time one of their fields is accessed.
+ */
+public class SuperJoinCheck {
+
+	public static void main(String[] args) throws SQLException {
+
+		ScriptedDriver.reset();
+
+		RDBMSModelFactory factory = new MySQLModelFactory(
+			new ConnectionPool(ScriptedDriver.URL, "user", "", 1, 1));
+		factory.setEntityCache(null);
+
+		Check.title("Student");
+
+		/* own columns only: no join */
+		ScriptedDriver.answer(student());
+
+		Student s = new Finder<Student>(Student.class, factory).
+			whereGt("Avg", 27).all()[0];
+
+		Check.equal("no join", ScriptedDriver.statements().get(0),
+			"SELECT Student.* FROM student WHERE  ( Avg  >  ? ) ORDER BY " +
+			"Student.StudentId DESC  [27]");
+		Check.equal("own field", s.getDepartment(), "CS");
+
+		/* the key of a super table is known without reading it */
+		Check.equal("email", s.getEmail(), "ann@mail");
+		Check.equal("statements", ScriptedDriver.statements().size(), 0);
+
+		Map<String, Object> full = student();
+		full.putAll(ScriptedDriver.row("Person.Id", 10, "Person.FirstName",
+			"Ann", "Person.LastName", "Doe", "Person.Age", 22,
+			"Person.Employer", null, "Person.ManagedCorporation", null,
+			"Account.Email", "ann@mail", "Account.Password", "secret",
+			"Account.WebService", null));
+		ScriptedDriver.answer(full);
+
+		/* all the supers are read together, once */
+		Check.equal("first name", s.getFirstName(), "Ann");
+		Check.equal("password", s.getPassword(), "secret");
+		Check.equal("loaded", ScriptedDriver.statements(), Arrays.asList(
+			"SELECT Student.*,Person.*,Account.* FROM student INNER JOIN " +
+			"person ON Person.Id = Student.PersonId INNER JOIN account ON " +
+			"Account.Email = Student.AccountEmail WHERE Student.StudentId " +
+			"IN (?) [1]"));
+
+		Check.title("Criteria and order on super fields");
+
+		new Finder<Student>(Student.class, factory).where("Password", "x").
+			all();
+		Check.equal("account joined", ScriptedDriver.statements().get(0),
+			"SELECT Student.*,Account.* FROM student INNER JOIN account ON " +
+			"Account.Email = Student.AccountEmail WHERE  ( Password  =  ? ) " +
+			"ORDER BY Student.StudentId DESC  [x]");
+
+		new Finder<Student>(Student.class, factory).orderByAsc("Age").all();
+		Check.equal("person joined", ScriptedDriver.statements().get(0),
+			"SELECT Student.*,Person.* FROM student INNER JOIN person ON " +
+			"Person.Id = Student.PersonId WHERE  true  ORDER BY Age ASC  []");
+	}
+
+	private static Map<String, Object> student() {
+
+		return ScriptedDriver.row("Student.StudentId", 1, "Student.Avg", 28.0,
+			"Student.Department", "CS", "Student.PersonId", 10,
+			"Student.AccountEmail", "ann@mail");
+	}
+}